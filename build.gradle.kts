@@ -1,12 +1,15 @@
+import java.util.Base64
+
 plugins {
     java
     application
     id("com.github.johnrengelman.shadow") version "8.1.1"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 java {
     toolchain {
-        languageVersion.set(JavaLanguageVersion.of(20))
+        languageVersion.set(JavaLanguageVersion.of(21))
     }
 }
 
@@ -33,10 +36,31 @@ dependencies {
     implementation("org.openjfx:javafx-graphics:$javafxVersion:$platform")
     implementation("org.openjfx:javafx-fxml:$javafxVersion:$platform")
     implementation("org.openjfx:javafx-media:$javafxVersion:$platform")
+
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+// Tests in src/test/java talk to local stub servers only; none of them needs a display
+tasks.test {
+    useJUnitPlatform()
+}
+
+// Benchmarks live in src/jmh/java; run with `gradlew jmh`, results land in build/reports/jmh.
+// They share the SyntheticCode corpora in src/test/java with the tests.
+jmh {
+    includeTests.set(true)
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
 }
 
 application {
-    mainClass.set("manager.CodeSnippetManagerFX")
+    mainClass.set("manager.Launcher")
 }
 
 tasks.shadowJar {
@@ -46,11 +70,57 @@ tasks.shadowJar {
 
     manifest {
         attributes(
-            "Main-Class" to "manager.CodeSnippetManagerFX"
+            "Main-Class" to "manager.Launcher"
+        )
+    }
+}
+
+// AppCDS: a training launch of the fat JAR records every class loaded up to the first frame and
+// the library load, and the JVM maps them from the archive on later launches instead of parsing
+// and verifying them again. Use it with
+//   java -XX:SharedArchiveFile=build/libs/CodeManager.jsa -jar build/libs/CodeManager-1.0.0.jar
+// The training launch opens the window, so it needs a display (xvfb-run on CI).
+val cdsArchive = layout.buildDirectory.file("libs/CodeManager.jsa")
+
+tasks.register<Exec>("createCdsArchive") {
+    dependsOn("shadowJar")
+    group = "distribution"
+    description = "Runs a training launch of the fat JAR and writes an AppCDS archive next to it"
+
+    val shadowJar = tasks.shadowJar.flatMap { it.archiveFile }
+    val launcher = javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(21)) }
+    val trainingDir = layout.buildDirectory.dir("cds-training")
+    inputs.file(shadowJar)
+    outputs.file(cdsArchive)
+
+    doFirst {
+        val archive = cdsArchive.get().asFile
+        archive.delete()
+        // a small library so loading and rendering snippets is part of the training
+        val snippets = trainingDir.get().dir("snippets").asFile
+        snippets.mkdirs()
+        val code = Base64.getEncoder().encodeToString("public class Sample {\n    // sample\n}\n".toByteArray())
+        File(snippets, "sample.properties").writeText("title=Sample\nlanguage=Java\ntags=sample\ncode=$code\n")
+        workingDir = trainingDir.get().asFile
+        commandLine(
+            launcher.get().executablePath.asFile.absolutePath,
+            "-XX:ArchiveClassesAtExit=${archive.absolutePath}",
+            "-Dcodemanager.exitAfterStartup=true",
+            "-jar", shadowJar.get().asFile.absolutePath
         )
     }
 }
 
+// A trained archive is only valid for the exact JAR path it was made with, and an installed app
+// lives wherever the user put it. Installers therefore ship a runtime with the JDK classes
+// archived (jlink --generate-cds-archive) and let the app write its own archive on first launch
+// when its folder is writable; later launches map it.
+val cdsJpackageOptions = arrayOf(
+    "--jlink-options", "--strip-native-commands --strip-debug --no-man-pages --no-header-files --generate-cds-archive",
+    "--java-options", "-XX:+AutoCreateSharedArchive",
+    "--java-options", "-XX:SharedArchiveFile=\$APPDIR/CodeManager.jsa"
+)
+
 // Custom task to create Windows installer
 tasks.register("createInstaller") {
     dependsOn("shadowJar")
@@ -84,12 +154,13 @@ tasks.register("createInstaller") {
             "--name", appName,
             "--app-version", appVersion,
             "--main-jar", shadowJar.name,
-            "--main-class", "manager.CodeSnippetManagerFX",
+            "--main-class", "manager.Launcher",
             "--vendor", "Prodexa",
             "--description", "Code Snippet Manager",
             "--win-dir-chooser",
             "--win-menu",
-            "--win-shortcut"
+            "--win-shortcut",
+            *cdsJpackageOptions
         )
 
         // Add icon if it exists
@@ -139,12 +210,13 @@ tasks.register("createExeInstaller") {
             "--name", appName,
             "--app-version", appVersion,
             "--main-jar", shadowJar.name,
-            "--main-class", "manager.CodeSnippetManagerFX",
+            "--main-class", "manager.Launcher",
             "--vendor", "Prodexa",
             "--description", "Code Snippet Manager",
             "--win-dir-chooser",
             "--win-menu",
-            "--win-shortcut"
+            "--win-shortcut",
+            *cdsJpackageOptions
         )
 
         // Add icon if it exists
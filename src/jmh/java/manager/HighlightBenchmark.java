@@ -0,0 +1,67 @@
+package manager;
+
+import org.fxmisc.richtext.model.StyleSpans;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-text highlighting of a large input per {@link SyntaxRegistry} language, through the
+ * hand-written lexer and through the regex for comparison. Languages without a lexer are
+ * measured once, in {@link RegexOnly}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HighlightBenchmark {
+    @Param({"java", "python", "javascript", "cpp", "sql"})
+    public String language;
+
+    @Param({"lexer", "regex"})
+    public String engine;
+
+    private String code;
+    private LanguageSyntax syntax;
+
+    @Setup
+    public void setUp() {
+        switch (language) {
+            case "python": code = SyntheticCode.pythonModule(4000, 1); break;
+            case "javascript": code = SyntheticCode.javascriptModule(4000, 1); break;
+            case "cpp": code = SyntheticCode.cppFile(3000, 1); break;
+            case "sql": code = SyntheticCode.sqlScript(3000, 1); break;
+            default: code = SyntheticCode.javaClass(3000, 1);
+        }
+        LanguageSyntax configured = SyntaxRegistry.forLanguage(language);
+        // the regex engine is the same syntax without its lexer
+        syntax = engine.equals("regex") ? new LanguageSyntax(configured.pattern, configured.styleMap) : configured;
+    }
+
+    @Benchmark
+    public StyleSpans<Collection<String>> computeHighlighting() {
+        return SyntaxHighlighter.computeHighlighting(code, syntax);
+    }
+
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public static class RegexOnly {
+        @Param({"html"})
+        public String language;
+
+        private String code;
+        private LanguageSyntax syntax;
+
+        @Setup
+        public void setUp() {
+            code = SyntheticCode.htmlPage(8000, 1);
+            syntax = SyntaxRegistry.forLanguage(language);
+        }
+
+        @Benchmark
+        public StyleSpans<Collection<String>> computeHighlighting() {
+            return SyntaxHighlighter.computeHighlighting(code, syntax);
+        }
+    }
+}
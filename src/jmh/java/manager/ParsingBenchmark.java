@@ -0,0 +1,45 @@
+package manager;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Function extraction from one file, and a full scan of a synthetic project tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParsingBenchmark {
+    @Param({"50", "500"})
+    public int methods;
+
+    private String source;
+    private Path tree;
+    private final Path file = Path.of("Demo.java");
+
+    @Setup
+    public void setUp() throws IOException {
+        source = SyntheticCode.javaClass(methods, 42);
+        tree = SyntheticCode.projectTree(100, methods / 10);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticCode.deleteTree(tree);
+    }
+
+    @Benchmark
+    public List<ProjectFunction> parseFunctions() {
+        return FunctionParser.parseFunctions(source, file, "bench");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<ProjectFunction> indexProjectFolder() {
+        return ProjectScanner.indexProjectFolder(tree.toFile());
+    }
+}
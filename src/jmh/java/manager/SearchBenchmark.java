@@ -0,0 +1,50 @@
+package manager;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The search behind {@code applyFilter}: library snippets plus as many scanned functions, at
+ * several library sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"sort", "helper 99", "zzz"})
+    public String query;
+
+    private Path indexDir;
+    private SearchIndex index;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Snippet> library = SyntheticCode.library(size, 7);
+        indexDir = Files.createTempDirectory("jmh-index");
+        index = new SearchIndex(indexDir, library);
+        List<ProjectFunction> functions = new ArrayList<>(size);
+        for (Snippet s : library) {
+            functions.add(new ProjectFunction("bench", s.slug() + ".java", "java", s.title.replace(' ', '_'), s.code, Path.of(s.slug() + ".java")));
+        }
+        index.putRoot(indexDir.resolve("project"), functions);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticCode.deleteTree(indexDir);
+    }
+
+    @Benchmark
+    public List<Snippet> search() {
+        return index.search(query, 200);
+    }
+}
@@ -0,0 +1,41 @@
+package manager;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The properties round trip every snippet goes through when it is saved and loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnippetBenchmark {
+    @Param({"20", "2000"})
+    public int methods;
+
+    private Snippet snippet;
+    private Properties properties;
+
+    @Setup
+    public void setUp() {
+        snippet = new Snippet("Benchmark snippet", SyntheticCode.javaClass(methods, 3), "Java", "bench, jmh, util", "Round trip");
+        properties = snippet.toProperties();
+    }
+
+    @Benchmark
+    public Properties toProperties() {
+        return snippet.toProperties();
+    }
+
+    @Benchmark
+    public Snippet fromProperties() {
+        return Snippet.fromProperties(properties);
+    }
+
+    @Benchmark
+    public Snippet roundTrip() {
+        return Snippet.fromProperties(snippet.toProperties());
+    }
+}
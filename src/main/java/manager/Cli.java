@@ -0,0 +1,224 @@
+package manager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Headless commands over the same snippet store and search index as the app, for cron jobs and
+ * CI. Results are written to stdout as JSON; progress chatter from the shared code goes to
+ * stderr so stdout stays parseable. Nothing here touches JavaFX.
+ */
+public class Cli {
+    static final Set<String> COMMANDS = Set.of("scan", "search", "export", "site", "import", "serve", "help", "--help", "-h");
+
+    private static final String USAGE = String.join("\n",
+            "Usage: CodeManager <command> [options]",
+            "",
+            "Commands:",
+            "  scan <dir>...           scan project folders and store their functions in the search index;",
+            "                          .jar/.zip source archives, alone or inside a folder, are read in place",
+            "  search <query>          search library snippets and indexed functions",
+            "      --limit <n>         maximum number of function hits (default 200)",
+            "      --code              include code in the results",
+            "  export [--out <file>]   write the whole library as a JSON array",
+            "  site [--out <dir>]      write the library as a static HTML site (default: site); unchanged",
+            "                          snippets are not re-rendered when exporting into the same folder",
+            "  import <file>...        add snippets from .json exports or .properties files",
+            "  serve [--socket <path>] keep the library loaded and answer queries on a Unix domain socket",
+            "                          (default: codemanager.sock; protocol in QueryDaemon)",
+            "",
+            "Options:",
+            "  --snippets <dir>        snippet store (default: snippets)",
+            "  --index <dir>           search index (default: index)",
+            "",
+            "Without a command the desktop app starts.");
+
+    private final PrintStream out;
+    private final File snippetsDir;
+    private final Path indexDir;
+    private final Map<String, String> options;
+    private final List<String> operands;
+
+    private Cli(PrintStream out, Map<String, String> options, List<String> operands) {
+        this.out = out;
+        this.options = options;
+        this.operands = operands;
+        this.snippetsDir = new File(options.getOrDefault("snippets", "snippets"));
+        this.indexDir = Path.of(options.getOrDefault("index", "index"));
+    }
+
+    /**
+     * Run one command and return the process exit code: 0 on success, 1 on failure, 2 on bad usage.
+     */
+    public static int run(String[] args) {
+        PrintStream stdout = System.out;
+        // FunctionParser and friends log to System.out; keep that off the JSON stream
+        System.setOut(System.err);
+        try {
+            Map<String, String> options = new HashMap<>();
+            List<String> operands = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("--code")) {
+                    options.put("code", "true");
+                } else if (a.startsWith("--")) {
+                    if (i + 1 >= args.length) return usage("Missing value for " + a);
+                    options.put(a.substring(2), args[++i]);
+                } else {
+                    operands.add(a);
+                }
+            }
+            Cli cli = new Cli(stdout, options, operands);
+            switch (args[0]) {
+                case "scan": return cli.scan();
+                case "search": return cli.search();
+                case "export": return cli.export();
+                case "site": return cli.site();
+                case "import": return cli.importFiles();
+                case "serve": return cli.serve();
+                default:
+                    stdout.println(USAGE);
+                    return 0;
+            }
+        } catch (IOException | JSONException | IllegalArgumentException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            return 1;
+        } finally {
+            System.out.flush();
+            System.setOut(stdout);
+            stdout.flush();
+        }
+    }
+
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        return 2;
+    }
+
+    private int scan() throws IOException {
+        if (operands.isEmpty()) return usage("scan needs at least one folder or archive");
+        SearchIndex index = new SearchIndex(indexDir, List.of());
+        JSONArray roots = new JSONArray();
+        for (String dir : operands) {
+            File folder = new File(dir);
+            if (!folder.isDirectory() && !ProjectScanner.isArchive(folder.getName())) {
+                throw new IllegalArgumentException("Not a folder or source archive: " + dir);
+            }
+            long start = System.nanoTime();
+            List<ProjectFunction> functions = ProjectScanner.indexProjectFolder(folder, indexDir.resolve("archives"));
+            index.putRoot(folder.toPath(), functions);
+            Set<Path> files = new HashSet<>();
+            for (ProjectFunction f : functions) files.add(f.path);
+            roots.put(new JSONObject()
+                    .put("root", folder.toPath().toAbsolutePath().normalize().toString())
+                    .put("files", files.size())
+                    .put("functions", functions.size())
+                    .put("millis", (System.nanoTime() - start) / 1_000_000));
+        }
+        out.println(new JSONObject()
+                .put("index", indexDir.toAbsolutePath().normalize().toString())
+                .put("roots", roots)
+                .put("totalFunctions", index.functionCount()));
+        return 0;
+    }
+
+    private int search() {
+        if (operands.size() != 1) return usage("search needs exactly one query (quote it if it has spaces)");
+        int limit = Integer.parseInt(options.getOrDefault("limit", "200"));
+        boolean withCode = options.containsKey("code");
+        SearchIndex index = new SearchIndex(indexDir, new SnippetStore(snippetsDir).loadAll());
+        index.load();
+        JSONArray hits = new JSONArray();
+        for (Snippet s : index.search(operands.get(0), limit)) {
+            JSONObject hit = new JSONObject();
+            if (s.origin != null) {
+                ProjectFunction f = s.origin;
+                hit.put("kind", "function")
+                        .put("name", f.functionName)
+                        .put("project", f.projectName)
+                        .put("file", f.fileName)
+                        .put("path", f.path.toString())
+                        .put("language", f.language);
+            } else {
+                hit.put("kind", "snippet")
+                        .put("title", s.title)
+                        .put("language", s.language())
+                        .put("tags", new JSONArray(s.tags()))
+                        .put("description", s.description)
+                        .put("file", s.sourceFile == null ? JSONObject.NULL : s.sourceFile.getPath());
+            }
+            if (withCode) hit.put("code", s.code);
+            hits.put(hit);
+        }
+        out.println(hits.toString(2));
+        return 0;
+    }
+
+    private int serve() throws IOException {
+        new QueryDaemon(Path.of(options.getOrDefault("socket", "codemanager.sock")), snippetsDir, indexDir).serve();
+        return 0;
+    }
+
+    private int export() throws IOException {
+        List<Snippet> all = new SnippetStore(snippetsDir).loadAll();
+        all.sort(Comparator.comparingLong((Snippet s) -> s.lastModified).reversed());
+        JSONArray array = new JSONArray();
+        for (Snippet s : all) array.put(s.toJson());
+        String target = options.get("out");
+        if (target == null) {
+            out.println(array.toString(2));
+        } else {
+            Files.writeString(Path.of(target), array.toString(2), StandardCharsets.UTF_8);
+            out.println(new JSONObject().put("exported", all.size()).put("file", Path.of(target).toAbsolutePath().toString()));
+        }
+        return 0;
+    }
+
+    private int site() throws IOException {
+        Path target = Path.of(options.getOrDefault("out", "site"));
+        SiteExporter.Result r = new SiteExporter(target).export(new SnippetStore(snippetsDir).loadAll(), (done, total) -> { });
+        out.println(new JSONObject()
+                .put("site", target.toAbsolutePath().normalize().toString())
+                .put("snippets", r.snippets)
+                .put("rendered", r.rendered)
+                .put("unchanged", r.unchanged)
+                .put("removed", r.removed)
+                .put("millis", r.millis));
+        return 0;
+    }
+
+    private int importFiles() throws IOException {
+        if (operands.isEmpty()) return usage("import needs at least one file");
+        List<Snippet> incoming = new ArrayList<>();
+        for (String name : operands) {
+            File f = new File(name);
+            if (name.endsWith(".json")) {
+                try (Reader r = new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8)) {
+                    Object value = new JSONTokener(r).nextValue();
+                    JSONArray array = value instanceof JSONArray ? (JSONArray) value : new JSONArray().put(value);
+                    for (int i = 0; i < array.length(); i++) incoming.add(Snippet.fromJson(array.getJSONObject(i)));
+                }
+            } else {
+                try (InputStream is = new FileInputStream(f)) {
+                    Properties p = new Properties();
+                    p.load(new InputStreamReader(is, StandardCharsets.UTF_8));
+                    incoming.add(Snippet.fromProperties(p));
+                }
+            }
+        }
+        new SnippetStore(snippetsDir).saveAll(incoming, (done, total) -> { });
+        JSONArray files = new JSONArray();
+        for (Snippet s : incoming) files.put(s.sourceFile.getPath());
+        out.println(new JSONObject().put("imported", incoming.size()).put("files", files));
+        return 0;
+    }
+}
@@ -1,7 +1,13 @@
 package manager;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.BooleanBinding;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.transformation.FilteredList;
+import javafx.concurrent.Task;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -16,39 +22,82 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
+import org.fxmisc.richtext.model.StyleSpans;
 import org.json.JSONObject;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import java.io.OutputStream;
 import java.util.Map;
 
 public class CodeSnippetManagerFX extends Application {
-    private final ObservableList<Snippet> snippets = FXCollections.observableArrayList();
+    private final SnippetList library = new SnippetList();
+    private final ObservableList<Snippet> snippets = library.items();
     private final ListView<Snippet> listView = new ListView<>();
     private final TextField searchField = new TextField();
     private final CodeArea previewArea = new CodeArea();
+    private final SearchIndex searchIndex = new SearchIndex(Path.of("index"), snippets);
+    // project roots kept indexed in the background; scans land in searchIndex
+    private final Workspace workspace = new Workspace(Path.of("workspace.json"), searchIndex, ProjectScanner.DEFAULT_ARCHIVE_CACHE,
+            root -> Platform.runLater(() -> applyFilter(searchField.getText())));
+    private final SimilarityIndex similarityIndex = new SimilarityIndex(CodeSnippetManagerFX::syntaxFor);
+    private final ListView<Snippet> similarList = new ListView<>();
+
+    // Highlighting runs here, never on the FX thread; only the newest request may apply its result
+    private final ExecutorService highlightExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "highlighter");
+        t.setDaemon(true);
+        return t;
+    });
+    private Task<StyleSpans<Collection<String>>> pendingHighlight;
+    // "find similar" updates and lookups, in list order so a lookup sees every edit before it
+    private final ExecutorService similarityExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "similarity-index");
+        t.setDaemon(true);
+        return t;
+    });
+    private final HighlightCache highlightCache = new HighlightCache(HIGHLIGHT_CACHE_SPANS);
+    private volatile int selectionGeneration;
+    // viewport-only highlighting of the current preview when it is too large to highlight at once
+    private ParagraphHighlighter largeHighlighter;
+
+    // scanned functions shown per query, on top of all matching library snippets
+    private static final int FUNCTION_HIT_LIMIT = 200;
+    private static final int SIMILAR_LIMIT = 10;
+    private static final long HIGHLIGHT_CACHE_SPANS = 2_000_000;
+    // list neighbours on each side of the selection whose highlighting is computed ahead of time
+    private static final int HIGHLIGHT_PREFETCH = 2;
+    // previews longer than this are highlighted lazily, viewport first
+    private static final int LARGE_CONTENT_CHARS = 256 * 1024;
+    private static final double LIST_CELL_HEIGHT = 46;
 
     private Button addBtn;
 
-    private static final String CONFIG_FILE = "config.properties";
-    private String githubToken = null;
+    // set by the AppCDS training launch: start up, load the library, then quit
+    static final String EXIT_AFTER_STARTUP_PROPERTY = "codemanager.exitAfterStartup";
+    // "first frame" and "library loaded", in either order
+    private static final int STARTUP_PHASES = 2;
+    private int startupPhasesLeft = STARTUP_PHASES;
 
     public CodeSnippetManagerFX() {
         TokenStorage.loadToken();
     }
 
     private final File storageDir = new File("snippets");
+    private final SnippetStore store = new SnippetStore(storageDir);
+    private final GistClient gistClient = new GistClient();
+    private final GistOutbox gistOutbox = new GistOutbox(Path.of("outbox"), gistClient, TokenStorage::loadToken, gistListener());
+    private final GistSync gistSync = new GistSync(gistClient, Path.of("sync"));
 
     public static void main(String[] args) {
         launch(args);
@@ -56,9 +105,16 @@ public class CodeSnippetManagerFX extends Application {
 
     @Override
     public void start(Stage primaryStage) {
-        // Load snippets
         if (!storageDir.exists()) storageDir.mkdirs();
-        loadSnippets();
+        Thread indexLoader = new Thread(() -> {
+            searchIndex.load();
+            Platform.runLater(() -> applyFilter(searchField.getText()));
+            // adopts roots indexed before the workspace existed, so the index must be loaded
+            workspace.start();
+        }, "search-index-loader");
+        indexLoader.setDaemon(true);
+        indexLoader.start();
+        gistOutbox.start();
 
         // Toolbar
         ToolBar toolBar = createToolBar(primaryStage);
@@ -68,39 +124,16 @@ public class CodeSnippetManagerFX extends Application {
         leftPane.setPadding(new Insets(12));
         Label mySnips = new Label("Snippets");
         mySnips.setFont(Font.font(16));
-        searchField.setPromptText("Search title, language or tags...");
+        searchField.setPromptText("Search snippets and scanned functions...");
         searchField.textProperty().addListener((obs, old, nw) -> applyFilter(nw));
 
         listView.setItems(snippets);
-        listView.setCellFactory(lv -> new ListCell<Snippet>() {
-            @Override
-            protected void updateItem(Snippet item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty || item == null) {
-                    setGraphic(null);
-                } else {
-                    HBox row = new HBox(8);
-                    VBox meta = new VBox(2);
-                    Label title = new Label(item.title);
-                    title.setStyle("-fx-font-weight: bold;");
-                    Label metaLine = new Label(item.language + " · " + String.join(", ", item.tags));
-                    metaLine.setStyle("-fx-text-fill: #606e7b; -fx-font-size: 11px;");
-                    meta.getChildren().addAll(title, metaLine);
-
-                    Region spacer = new Region();
-                    HBox.setHgrow(spacer, Priority.ALWAYS);
-
-                    Label date = new Label(formatDate(item.lastModified));
-                    date.setStyle("-fx-text-fill: #9aa6b2; -fx-font-size: 11px;");
-
-                    row.getChildren().addAll(meta, spacer, date);
-                    setGraphic(row);
-                }
-            }
-        });
+        listView.setCellFactory(lv -> new SnippetCell(library::row));
+        // rows all have the same height, so the list never measures cells while scrolling
+        listView.setFixedCellSize(LIST_CELL_HEIGHT);
 
         listView.getSelectionModel().selectedItemProperty().addListener((obs, o, n) -> showPreview(n));
-        listView.setPlaceholder(new Label("No snippets. Click + to add one."));
+        listView.setPlaceholder(new Label("Loading snippets..."));
 
         HBox searchRow = new HBox(8, searchField);
         searchRow.setAlignment(Pos.CENTER_LEFT);
@@ -116,38 +149,60 @@ public class CodeSnippetManagerFX extends Application {
         previewTitle.setFont(Font.font(16));
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
+        Button addToLibraryBtn = new Button("Add to Library");
         Button editBtn = new Button("Edit");
         Button deleteBtn = new Button("Delete");
-        editBtn.disableProperty().bind(listView.getSelectionModel().selectedItemProperty().isNull());
+        BooleanBinding scannedSelected = Bindings.createBooleanBinding(() -> {
+            Snippet sel = listView.getSelectionModel().getSelectedItem();
+            return sel != null && sel.origin != null;
+        }, listView.getSelectionModel().selectedItemProperty());
+        addToLibraryBtn.visibleProperty().bind(scannedSelected);
+        addToLibraryBtn.managedProperty().bind(scannedSelected);
+        addToLibraryBtn.setOnAction(e -> addToLibrary(listView.getSelectionModel().getSelectedItem()));
+        editBtn.disableProperty().bind(listView.getSelectionModel().selectedItemProperty().isNull().or(scannedSelected));
         editBtn.setOnAction(e -> {
             Snippet selected = listView.getSelectionModel().getSelectedItem();
             if (selected != null) {
                 showSnippetDialog(selected, primaryStage);
             }
         });
-        deleteBtn.disableProperty().bind(listView.getSelectionModel().selectedItemProperty().isNull());
-        header.getChildren().addAll(previewTitle, spacer, editBtn, deleteBtn);
+        deleteBtn.disableProperty().bind(listView.getSelectionModel().selectedItemProperty().isNull().or(scannedSelected));
+        header.getChildren().addAll(previewTitle, spacer, addToLibraryBtn, editBtn, deleteBtn);
 
         previewArea.setEditable(false);
         previewArea.setWrapText(true);
         previewArea.setParagraphGraphicFactory(LineNumberFactory.get(previewArea));
 
         // Enhanced syntax highlighting
-        previewArea.getStylesheets().add("data:text/css," + encodeCss(
-                ".keyword { -fx-fill: #0000ff; -fx-font-weight: bold; }" +
-                        ".comment { -fx-fill: #008000; font-style: italic; }" +
-                        ".string { -fx-fill: #a31515; }" +
-                        ".number { -fx-fill: #098658; }" +
-                        ".annotation { -fx-fill: #646695; }" +
-                        ".operator { -fx-fill: #aa22ff; }"
-        ));
+        previewArea.getStylesheets().add("data:text/css," + encodeCss(HIGHLIGHT_CSS));
 
         HBox metaStrip = new HBox(12);
         metaStrip.setPadding(new Insets(6, 0, 6, 0));
         Label emptyMeta = new Label("");
         metaStrip.getChildren().add(emptyMeta);
 
-        rightPane.getChildren().addAll(header, metaStrip, previewArea);
+        // "Similar" sidebar next to the preview
+        VBox similarPane = new VBox(6);
+        Label similarTitle = new Label("Similar");
+        similarTitle.setStyle("-fx-font-weight: bold;");
+        similarList.setPlaceholder(new Label("No similar snippets"));
+        similarList.setPrefWidth(220);
+        similarList.setOnMouseClicked(e -> {
+            Snippet target = similarList.getSelectionModel().getSelectedItem();
+            if (e.getClickCount() == 2 && target != null) {
+                if (!listView.getItems().contains(target)) searchField.clear();
+                listView.getSelectionModel().select(target);
+                listView.scrollTo(target);
+            }
+        });
+        VBox.setVgrow(similarList, Priority.ALWAYS);
+        similarPane.getChildren().addAll(similarTitle, similarList);
+
+        HBox previewRow = new HBox(8, previewArea, similarPane);
+        HBox.setHgrow(previewArea, Priority.ALWAYS);
+        VBox.setVgrow(previewRow, Priority.ALWAYS);
+
+        rightPane.getChildren().addAll(header, metaStrip, previewRow);
 
         // Layout
         SplitPane split = new SplitPane(leftPane, rightPane);
@@ -162,34 +217,111 @@ public class CodeSnippetManagerFX extends Application {
         addBtn.setOnAction(e -> showSnippetDialog(null, primaryStage));
         deleteBtn.setOnAction(e -> deleteSelected());
 
-        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.N, KeyCombination.SHORTCUT_DOWN),
-                () -> showSnippetDialog(null, primaryStage));
         scene.getAccelerators().put(new KeyCodeCombination(KeyCode.F, KeyCombination.SHORTCUT_DOWN),
                 searchField::requestFocus);
+        // background rescans back off while the user is typing or clicking
+        scene.addEventFilter(InputEvent.ANY, e -> workspace.userActive());
 
         primaryStage.setTitle("Code Manager / Snippet Manager");
+        primaryStage.setScene(scene);
 
-        // Load taskbar icons correctly from classpath
-        int[] sizes = {16, 32, 48, 64, 128};
-        for (int size : sizes) {
-            try {
-                InputStream is = getClass().getResourceAsStream("/icons/icon_" + size + "x" + size + ".png");
-                if (is != null) {
-                    javafx.scene.image.Image fxIcon = new javafx.scene.image.Image(is);
-                    primaryStage.getIcons().add(fxIcon);
-                } else {
-                    System.out.println("Icon not found: " + size + "x" + size);
+        // the window comes up empty; the library, the things that edit it and the icons follow
+        toolBar.setDisable(true);
+        trackFirstFrame(scene);
+        primaryStage.show();
+        // starting Flight Recorder takes a while; let it run alongside the library load
+        Thread recorder = new Thread(Metrics::startRecording, "jfr-start");
+        recorder.setDaemon(true);
+        recorder.start();
+        loadIcons(primaryStage);
+        loadLibrary(() -> {
+            toolBar.setDisable(false);
+            listView.setPlaceholder(new Label("No snippets. Click + to add one."));
+            scene.getAccelerators().put(new KeyCodeCombination(KeyCode.N, KeyCombination.SHORTCUT_DOWN),
+                    () -> showSnippetDialog(null, primaryStage));
+            recordStartupPhase("library loaded");
+        });
+    }
+
+    /**
+     * Read the library on a background thread and hand it to the list in one update. Until
+     * {@code onLoaded} runs the list is empty and nothing may add to it, since the load replaces
+     * its contents.
+     */
+    private void loadLibrary(Runnable onLoaded) {
+        Thread loader = new Thread(() -> {
+            List<Snippet> loaded = store.loadAll();
+            Platform.runLater(() -> {
+                library.setAll(loaded);
+                applyFilter(searchField.getText());
+                similarityExecutor.execute(() -> similarityIndex.putAll(loaded));
+                // keep "find similar" in step with every add, edit and delete from here on
+                snippets.addListener((ListChangeListener<Snippet>) c -> {
+                    while (c.next()) {
+                        List<Snippet> removed = List.copyOf(c.getRemoved());
+                        List<Snippet> added = List.copyOf(c.getAddedSubList());
+                        similarityExecutor.execute(() -> {
+                            removed.forEach(similarityIndex::remove);
+                            added.forEach(similarityIndex::put);
+                        });
+                    }
+                });
+                onLoaded.run();
+            });
+        }, "library-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Decode the taskbar icons off the FX thread; the stage picks them up once they are ready
+    private void loadIcons(Stage stage) {
+        Thread loader = new Thread(() -> {
+            List<javafx.scene.image.Image> icons = new ArrayList<>();
+            int[] sizes = {16, 32, 48, 64, 128};
+            for (int size : sizes) {
+                try (InputStream is = getClass().getResourceAsStream("/icons/icon_" + size + "x" + size + ".png")) {
+                    if (is != null) {
+                        icons.add(new javafx.scene.image.Image(is));
+                    } else {
+                        System.out.println("Icon not found: " + size + "x" + size);
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
                 }
-            } catch (Exception ex) {
-                ex.printStackTrace();
             }
+            Platform.runLater(() -> stage.getIcons().addAll(icons));
+        }, "icon-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Record launch-to-first-frame once the scene has been laid out for the first time
+    private void trackFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            recordStartupPhase("first frame");
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    // Called on the FX thread for each of the STARTUP_PHASES
+    private void recordStartupPhase(String phase) {
+        boolean exitAfterStartup = Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY);
+        Instant launched = ProcessHandle.current().info().startInstant().orElse(null);
+        if (launched != null) {
+            long nanos = Duration.between(launched, Instant.now()).toNanos();
+            Metrics.StartupEvent event = new Metrics.StartupEvent();
+            event.phase = phase;
+            event.sinceLaunch = nanos;
+            event.commit();
+            if (phase.equals("first frame")) Metrics.FIRST_FRAME.record(nanos);
+            // the JFR event and FIRST_FRAME carry this; only launches that quit right away print it
+            if (exitAfterStartup) System.out.println("Startup: " + phase + " " + nanos / 1_000_000 + " ms after launch");
         }
-
-        primaryStage.setScene(scene);
-        primaryStage.show();
+        if (--startupPhasesLeft == 0 && exitAfterStartup) Platform.exit();
     }
 
-
     private ToolBar createToolBar(Stage owner) {
         addBtn = new Button("+"); // assign to the field!
         addBtn.setId("btnAdd");
@@ -201,42 +333,59 @@ public class CodeSnippetManagerFX extends Application {
             chooser.setTitle("Select Project Folder");
             File folder = chooser.showDialog(owner);
             if (folder != null && folder.isDirectory()) {
-                List<ProjectFunction> functions = indexProjectFolder(folder);
-                showFunctionSelectionDialog(functions, owner);
+                // scanned next on the workspace thread; the picker opens once the functions are in
+                workspace.request(folder.toPath(), functions ->
+                        Platform.runLater(() -> showFunctionSelectionDialog(folder.toPath(), functions, owner)));
             }
         });
 
+        Button workspaceBtn = new Button("Workspace");
+        workspaceBtn.setOnAction(e -> WorkspaceView.show(owner, workspace));
+
         Button imp = new Button("Import");
         Button exp = new Button("Export");
+        Button site = new Button("Export Site");
+        Button sync = new Button("Sync Gists");
         Button prefs = new Button("Preferences");
 
-        ToolBar tb = new ToolBar(addBtn, scanFolderBtn, new Separator(), imp, exp, new Region(), prefs);
+        ToolBar tb = new ToolBar(addBtn, scanFolderBtn, workspaceBtn, new Separator(), imp, exp, site, sync, new Region(), prefs);
         HBox.setHgrow(tb.getItems().get(tb.getItems().size() - 1), Priority.ALWAYS);
         tb.setPadding(new Insets(6));
 
         // actions
         imp.setOnAction(e -> importSnippets(owner));
         exp.setOnAction(e -> exportSnippets(owner));
+        site.setOnAction(e -> exportSite(owner, site));
+        sync.setOnAction(e -> syncGists(owner, sync));
         prefs.setOnAction(e -> showPrefs(owner));
 
         return tb;
     }
 
-    private void showFunctionSelectionDialog(List<ProjectFunction> functions, Stage owner) {
+    private void showFunctionSelectionDialog(Path root, List<ProjectFunction> functions, Stage owner) {
         Stage dialog = new Stage();
         dialog.initModality(Modality.APPLICATION_MODAL);
         dialog.initOwner(owner);
-        dialog.setTitle("Select Function");
+        dialog.setTitle("Select Functions");
+        // keep the root being picked from freshest while the picker is open
+        workspace.focus(root);
+        dialog.setOnHidden(e -> workspace.focus(null));
 
         // Filter out empty functions
         List<ProjectFunction> nonEmptyFunctions = functions.stream()
                 .filter(f -> f.code != null && !f.code.replaceAll("[\\s{}]", "").isEmpty())
                 .collect(Collectors.toList());
 
+        FilteredList<ProjectFunction> filtered = new FilteredList<>(FXCollections.observableArrayList(nonEmptyFunctions));
+        TextField filter = new TextField();
+        filter.setPromptText("Filter by project, file or function...");
+        filter.textProperty().addListener((obs, o, n) -> {
+            String q = n.trim().toLowerCase();
+            filtered.setPredicate(q.isEmpty() ? null : f -> functionLabel(f).toLowerCase().contains(q));
+        });
 
-        ListView<ProjectFunction> lv = new ListView<>();
-        lv.setItems(FXCollections.observableArrayList(nonEmptyFunctions));
-
+        ListView<ProjectFunction> lv = new ListView<>(filtered);
+        lv.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         lv.setCellFactory(list -> new ListCell<>() {
             @Override
             protected void updateItem(ProjectFunction item, boolean empty) {
@@ -244,215 +393,185 @@ public class CodeSnippetManagerFX extends Application {
                 if (empty || item == null) {
                     setText(null);
                 } else {
-                    setText(item.projectName + "/" + item.fileName + " :: " + item.functionName);
+                    setText(functionLabel(item));
                 }
             }
         });
 
+        Button selectAllBtn = new Button("Select All");
+        selectAllBtn.setOnAction(e -> lv.getSelectionModel().selectAll());
+        Label selectedCount = new Label();
+        selectedCount.textProperty().bind(Bindings.size(lv.getSelectionModel().getSelectedIndices()).asString("%d selected"));
+
+        Button addSelectedBtn = new Button("Add to Library");
+        addSelectedBtn.disableProperty().bind(Bindings.isEmpty(lv.getSelectionModel().getSelectedIndices()));
+        ProgressBar progress = new ProgressBar(0);
+        progress.setMaxWidth(Double.MAX_VALUE);
+        progress.setVisible(false);
+        Label status = new Label();
+
+        addSelectedBtn.setOnAction(e -> {
+            List<ProjectFunction> selected = new ArrayList<>(lv.getSelectionModel().getSelectedItems());
+            Task<List<Snippet>> task = addFunctionsToLibrary(selected);
+            progress.visibleProperty().bind(task.runningProperty());
+            progress.progressProperty().bind(task.progressProperty());
+            status.textProperty().bind(task.messageProperty());
+            lv.disableProperty().bind(task.runningProperty());
+            filter.disableProperty().bind(task.runningProperty());
+            selectAllBtn.disableProperty().bind(task.runningProperty());
+            addSelectedBtn.disableProperty().bind(task.runningProperty().or(Bindings.isEmpty(lv.getSelectionModel().getSelectedIndices())));
+        });
+
         Button gistBtn = new Button("Create Gist");
-        gistBtn.setDisable(true);
-        lv.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> gistBtn.setDisable(newV == null));
+        gistBtn.disableProperty().bind(Bindings.isEmpty(lv.getSelectionModel().getSelectedIndices()));
 
+        // all selected functions go into one multi-file gist
         gistBtn.setOnAction(e -> {
-            ProjectFunction selected = lv.getSelectionModel().getSelectedItem();
-            if (selected != null) {
-                Map<String, String> filesMap = new HashMap<>();
-                filesMap.put(selected.functionName + ".java", selected.code);
-
-                String description = selected.projectName + "/" + selected.fileName + " :: " + selected.functionName;
-
-                try {
-                    String githubToken = getGithubToken(owner); // get token (prompt if needed)
-                    System.out.println("Using token: '" + githubToken + "'");
-                    createGist(description, true, filesMap, githubToken); // pass token
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-
-                dialog.close();
-            }
+            List<ProjectFunction> selected = new ArrayList<>(lv.getSelectionModel().getSelectedItems());
+            if (selected.isEmpty()) return;
+            List<Snippet> asSnippets = selected.stream().map(Snippet::fromFunction).collect(Collectors.toList());
+            String description = selected.size() == 1
+                    ? functionLabel(selected.get(0))
+                    : selected.get(0).projectName + " :: " + selected.size() + " functions";
+
+            // prompt once if no token is stored yet; a cancelled prompt queues nothing
+            String token = getGithubToken(owner);
+            if (token == null || token.isEmpty()) return;
+            createGist(description, true, GistClient.files(asSnippets));
+            dialog.close();
         });
 
-        VBox layout = new VBox(8, lv, gistBtn);
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox actions = new HBox(8, selectAllBtn, selectedCount, spacer, gistBtn, addSelectedBtn);
+        actions.setAlignment(Pos.CENTER_LEFT);
+        VBox layout = new VBox(8, filter, lv, actions, progress, status);
+        VBox.setVgrow(lv, Priority.ALWAYS);
         layout.setPadding(new Insets(12));
-        Scene scene = new Scene(layout, 600, 400);
+        Scene scene = new Scene(layout, 600, 440);
         dialog.setScene(scene);
         dialog.show();
     }
 
-    // Prompt user for GitHub token
-    private String showTokenPrompt(Stage owner) {
-        TextInputDialog dialog = new TextInputDialog();
-        dialog.initOwner(owner);
-        dialog.setTitle("GitHub Token Required");
-        dialog.setHeaderText("Enter your GitHub Personal Access Token");
-        dialog.setContentText("Token:");
-        return dialog.showAndWait().orElse(null);
-    }
-
-    // Simple alert
-    private void showAlert(String message) {
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle("Info");
-        alert.setHeaderText(null);
-        alert.setContentText(message);
-        alert.showAndWait();
+    private static String functionLabel(ProjectFunction f) {
+        return f.projectName + "/" + f.fileName + " :: " + f.functionName;
     }
 
-
-
-    private void loadToken() {
-        Properties props = new Properties();
-        File file = new File(CONFIG_FILE);
-        if (file.exists()) {
-            try (FileInputStream fis = new FileInputStream(file)) {
-                props.load(fis);
-                githubToken = props.getProperty("github.token").trim();
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * Copy scanned functions into the library: files are written on a background thread in one
+     * batch, and the new entries reach the list in one change once all of them are on disk.
+     */
+    private Task<List<Snippet>> addFunctionsToLibrary(List<ProjectFunction> functions) {
+        Task<List<Snippet>> task = new Task<>() {
+            @Override
+            protected List<Snippet> call() throws Exception {
+                List<Snippet> added = new ArrayList<>(functions.size());
+                for (ProjectFunction f : functions) added.add(Snippet.fromFunction(f).toLibrarySnippet());
+                updateMessage("Saving " + added.size() + " snippets...");
+                store.saveAll(added, (done, total) -> {
+                    updateProgress(done, total);
+                    updateMessage("Saved " + done + " of " + total);
+                });
+                return added;
             }
-        }
+        };
+        task.setOnSucceeded(e -> {
+            library.insertAll(task.getValue());
+            applyFilter(searchField.getText());
+        });
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            alert("Add to library", "Saving failed: " + task.getException().getMessage());
+        });
+        Thread writer = new Thread(task, "library-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return task;
     }
 
-    // Save token to file
-    private void saveToken() {
-        Properties props = new Properties();
-        props.setProperty("github.token", githubToken != null ? githubToken : "");
-        try (FileOutputStream fos = new FileOutputStream(CONFIG_FILE)) {
-            props.store(fos, "CodeSnippetManager Config");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
+    private void showPreview(Snippet s) {
+        if (pendingHighlight != null) pendingHighlight.cancel();
+        pendingHighlight = null;
+        selectionGeneration++;
+        if (largeHighlighter != null) largeHighlighter.dispose();
+        largeHighlighter = null;
+        previewArea.clear();
+        similarList.getItems().clear();
+        if (s == null) return;
 
-    private List<ProjectFunction> indexProjectFolder(File folder) {
-        List<ProjectFunction> functions = new ArrayList<>();
-        if (folder == null || !folder.isDirectory()) {
-            System.out.println("Invalid folder: " + folder);
-            return functions;
-        }
+        // CodeArea turns \r\n and \r into paragraph breaks; keep offsets aligned with what it holds
+        String code = normalizeLineEndings(s.code);
+        previewArea.replaceText(code);
+        int generation = selectionGeneration;
+        similarityExecutor.execute(() -> {
+            List<Snippet> similar = similarityIndex.similar(s, SIMILAR_LIMIT);
+            Platform.runLater(() -> {
+                if (generation == selectionGeneration) similarList.getItems().setAll(similar);
+            });
+        });
 
-        try {
-            Files.walk(folder.toPath())
-                    .filter(Files::isRegularFile)
-                    .forEach(file -> {
-                        String lang = getLanguage(file.getFileName().toString());
-                        if (lang == null) {
-                            System.out.println("Skipping file (unknown language): " + file);
-                            return;
-                        }
-
-                        System.out.println("Scanning file: " + file + " (language: " + lang + ")");
-                        try {
-                            String content = Files.readString(file);
-                            List<ProjectFunction> fileFunctions = parseFunctions(content, file, lang);
-                            System.out.println("Found " + fileFunctions.size() + " functions in " + file);
-                            functions.addAll(fileFunctions);
-                        } catch (IOException ex) {
-                            System.out.println("Error reading file: " + file);
-                            ex.printStackTrace();
-                        }
-                    });
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (code.length() > LARGE_CONTENT_CHARS) {
+            largeHighlighter = new ParagraphHighlighter(previewArea, syntaxFor(s.language()), code);
+            Platform.runLater(() -> {
+                if (largeHighlighter != null) largeHighlighter.highlightVisible();
+            });
+            prefetchNeighbours(s);
+            return;
         }
 
-        System.out.println("Total functions indexed: " + functions.size());
-        return functions;
-    }
-    private static final Pattern FUNCTION_PATTERN = Pattern.compile(
-            "(public|protected|private|static|\\s)+[\\w\\<\\>\\[\\]]+\\s+(\\w+)\\s*\\([^)]*\\)\\s*\\{"
-    );
-
-    public static List<ProjectFunction> parseFunctions(String content, Path filePath, String projectName) throws IOException {
-        List<ProjectFunction> functions = new ArrayList<>();
-        String c = new String(Files.readAllBytes(filePath));
-
-        Matcher matcher = FUNCTION_PATTERN.matcher(content);
-        while (matcher.find()) {
-            String signature = matcher.group();
-            String functionName = matcher.group(2);
-
-            // Find the body starting at matcher.end() - 1 (after the opening brace)
-            int start = matcher.end() - 1;
-            int end = findMatchingBrace(content, start);
-            if (end > start) {
-                String codeBody = content.substring(start + 1, end).trim();
-                if (!codeBody.isEmpty()) {
-                    functions.add(new ProjectFunction(
-                            projectName,
-                            filePath.getFileName().toString(),
-                            "java",
-                            functionName,
-                            codeBody,
-                            filePath
-                    ));
-                }
-            }
+        StyleSpans<Collection<String>> cached = highlightCache.get(s.language(), code);
+        if (cached != null) {
+            previewArea.setStyleSpans(0, cached);
+            prefetchNeighbours(s);
+            return;
         }
 
-        return functions;
-    }
-
-    private static int findMatchingBrace(String text, int openIndex) {
-        int depth = 0;
-        for (int i = openIndex; i < text.length(); i++) {
-            char c = text.charAt(i);
-            if (c == '{') depth++;
-            else if (c == '}') {
-                depth--;
-                if (depth == 0) return i;
+        LanguageSyntax syntax = syntaxFor(s.language());
+        String language = s.language();
+        Task<StyleSpans<Collection<String>>> task = new Task<>() {
+            @Override
+            protected StyleSpans<Collection<String>> call() {
+                StyleSpans<Collection<String>> spans = SyntaxHighlighter.computeHighlighting(code, syntax);
+                highlightCache.put(language, code, spans);
+                return spans;
             }
-        }
-        return -1; // no match found
-    }
-
-
-    private int findFunctionEnd(String content, int start, String language) {
-        // naive: find next closing brace or newline for Python
-        if (language.equalsIgnoreCase("python")) {
-            int nextFn = content.indexOf("\ndef ", start + 1);
-            return nextFn > 0 ? nextFn : content.length();
-        } else {
-            int braceCount = 0;
-            for (int i = start; i < content.length(); i++) {
-                char c = content.charAt(i);
-                if (c == '{') braceCount++;
-                else if (c == '}') braceCount--;
-                if (braceCount == 0) return i + 1;
+        };
+        task.setOnSucceeded(e -> {
+            // a newer selection replaced the text in the meantime; drop the stale result
+            if (task != pendingHighlight || previewArea.getLength() != code.length()) return;
+            previewArea.setStyleSpans(0, task.getValue());
+        });
+        task.setOnFailed(e -> task.getException().printStackTrace());
+        pendingHighlight = task;
+        highlightExecutor.execute(task);
+        prefetchNeighbours(s);
+    }
+
+    // Speculatively highlight the entries around the selection so arrowing through the list hits the cache
+    private void prefetchNeighbours(Snippet s) {
+        List<Snippet> items = listView.getItems();
+        int idx = listView.getSelectionModel().getSelectedIndex();
+        if (idx < 0 || idx >= items.size() || items.get(idx) != s) return;
+        int generation = selectionGeneration;
+        for (int d = 1; d <= HIGHLIGHT_PREFETCH; d++) {
+            for (int i : new int[]{idx + d, idx - d}) {
+                if (i < 0 || i >= items.size()) continue;
+                Snippet n = items.get(i);
+                // large neighbours are highlighted viewport-first when shown, never up front
+                if (n.code.length() > LARGE_CONTENT_CHARS) continue;
+                String code = normalizeLineEndings(n.code);
+                String language = n.language();
+                highlightExecutor.execute(() -> {
+                    // the selection moved on while this was queued; its own neighbours are queued behind us
+                    if (generation != selectionGeneration || highlightCache.contains(language, code)) return;
+                    highlightCache.put(language, code, SyntaxHighlighter.computeHighlighting(code, syntaxFor(language)));
+                });
             }
-            return content.length();
         }
     }
 
-
-    private String getLanguage(String fileName) {
-        if (fileName.endsWith(".java")) return "java";
-        if (fileName.endsWith(".py")) return "python";
-        if (fileName.endsWith(".js")) return "javascript";
-        return null;
-    }
-
-
-    private void showPreview(Snippet s) {
-        previewArea.clear();
-        if (s == null) return;
-
-        String code = s.code;
-        previewArea.replaceText(code);
-
-        String langKey = s.language.toLowerCase().trim();
-        LanguageSyntax syntax = LANGUAGE_SYNTAX.getOrDefault(langKey, LANGUAGE_SYNTAX.get("java")); // default to Java
-
-        Matcher matcher = syntax.pattern.matcher(code);
-        while (matcher.find()) {
-            for (Map.Entry<String, String> entry : syntax.styleMap.entrySet()) {
-                if (matcher.group(entry.getKey()) != null) {
-                    previewArea.setStyleClass(matcher.start(), matcher.end(), entry.getValue());
-                    break;
-                }
-            }
-        }
+    private static String normalizeLineEndings(String code) {
+        return code.indexOf('\r') < 0 ? code : code.replace("\r\n", "\n").replace('\r', '\n');
     }
 
     private void applyFilter(String q) {
@@ -461,12 +580,17 @@ public class CodeSnippetManagerFX extends Application {
             listView.setItems(snippets);
             return;
         }
-        ObservableList<Snippet> filtered = FXCollections.observableArrayList(
-                snippets.stream()
-                        .filter(s -> s.title.toLowerCase().contains(ql) || s.language.toLowerCase().contains(ql) || s.description.toLowerCase().contains(ql) || s.tags.stream().anyMatch(t -> t.toLowerCase().contains(ql)))
-                        .collect(Collectors.toList())
-        );
-        listView.setItems(filtered);
+        listView.setItems(FXCollections.observableArrayList(searchIndex.search(ql, FUNCTION_HIT_LIMIT)));
+    }
+
+    // One-click copy of a scanned function hit into the library
+    private void addToLibrary(Snippet hit) {
+        if (hit == null || hit.origin == null) return;
+        Snippet s = hit.toLibrarySnippet();
+        if (!saveSnippetToFile(s)) return;
+        library.insert(s);
+        applyFilter(searchField.getText());
+        listView.getSelectionModel().select(s);
     }
 
     private void showSnippetDialog(Snippet base, Stage owner) {
@@ -479,15 +603,31 @@ public class CodeSnippetManagerFX extends Application {
 
         TextField title = new TextField(base != null ? base.title : "");
         title.setPromptText("Title");
-        TextField language = new TextField(base != null ? base.language : "");
+        TextField language = new TextField(base != null ? base.language() : "");
         language.setPromptText("Language (e.g. Java, Python)");
-        TextField tags = new TextField(base != null ? String.join(", ", base.tags) : "");
+        TextField tags = new TextField(base != null ? String.join(", ", base.tags()) : "");
         tags.setPromptText("tags, comma separated");
         TextField desc = new TextField(base != null ? base.description : "");
         desc.setPromptText("Short description");
-        TextArea code = new TextArea(base != null ? base.code : "");
-        code.setFont(Font.font("Monospaced", 12));
+        // Highlighted while typing; only the paragraphs an edit touches are re-lexed
+        String initialCode = normalizeLineEndings(base != null ? base.code : "");
+        CodeArea code = new CodeArea(initialCode);
+        code.setParagraphGraphicFactory(LineNumberFactory.get(code));
+        code.getStylesheets().add("data:text/css," + encodeCss(HIGHLIGHT_CSS));
+        code.setStyle("-fx-font-family: 'Monospaced'; -fx-font-size: 12px;");
         code.setPrefHeight(320);
+        VBox.setVgrow(code, Priority.ALWAYS);
+        ParagraphHighlighter[] highlighter = {new ParagraphHighlighter(code, syntaxFor(language.getText()), initialCode)};
+        highlighter[0].followEdits();
+        language.textProperty().addListener((obs, o, n) -> {
+            if (syntaxFor(o) == syntaxFor(n)) return;
+            highlighter[0].dispose();
+            code.clearStyle(0, code.getLength());
+            highlighter[0] = new ParagraphHighlighter(code, syntaxFor(n), code.getText());
+            highlighter[0].followEdits();
+            highlighter[0].highlightVisible();
+        });
+        Platform.runLater(() -> highlighter[0].highlightVisible());
 
         HBox buttons = new HBox(8);
         buttons.setAlignment(Pos.CENTER_RIGHT);
@@ -500,6 +640,7 @@ public class CodeSnippetManagerFX extends Application {
         Scene scene = new Scene(root, 720, 600);
         scene.getStylesheets().add("data:text/css," + encodeCss(getCss()));
         d.setScene(scene);
+        d.setOnHidden(e -> highlighter[0].dispose());
 
         cancel.setOnAction(e -> d.close());
         save.setOnAction(e -> {
@@ -514,17 +655,20 @@ public class CodeSnippetManagerFX extends Application {
             else {
                 s = new Snippet(t, code.getText(), language.getText().trim(), tags.getText().trim(), desc.getText().trim());
                 s.dateCreated = base.dateCreated;
+                // stays linked to its gist; the next sync pushes the edit
+                s.gistId = base.gistId;
+                s.gistFile = base.gistFile;
             }
-            s.lastModified = new Date();
-            // save file
-            saveSnippetToFile(s);
+            s.lastModified = System.currentTimeMillis();
+            if (base != null) highlightCache.invalidate(base.language(), normalizeLineEndings(base.code));
+            // keep the dialog open on failure; the old file is all there is of the snippet
+            if (!saveSnippetToFile(s)) return;
+            // the edit is a new file; drop the old one so the snippet does not load twice
+            if (base != null && base.sourceFile != null && !base.sourceFile.equals(s.sourceFile)) base.sourceFile.delete();
             // refresh list
-            int idx = snippets.indexOf(base);
-            if (base == null) snippets.add(0, s);
-            else {
-                if (idx >= 0) snippets.set(idx, s);
-            }
-            listView.setItems(snippets);
+            if (base == null) library.insert(s);
+            else library.replace(base, s);
+            applyFilter(searchField.getText());
             listView.getSelectionModel().select(s);
             d.close();
         });
@@ -540,7 +684,8 @@ public class CodeSnippetManagerFX extends Application {
             if (bt == ButtonType.YES) {
                 // delete file
                 if (s.sourceFile != null && s.sourceFile.exists()) s.sourceFile.delete();
-                snippets.remove(s);
+                highlightCache.invalidate(s.language(), normalizeLineEndings(s.code));
+                library.remove(s);
                 listView.getSelectionModel().clearSelection();
             }
         });
@@ -555,8 +700,7 @@ public class CodeSnippetManagerFX extends Application {
             Properties p = new Properties();
             p.load(new InputStreamReader(is, StandardCharsets.UTF_8));
             Snippet s = Snippet.fromProperties(p);
-            saveSnippetToFile(s);
-            snippets.add(s);
+            if (saveSnippetToFile(s)) library.insert(s);
         } catch (Exception ex) {
             ex.printStackTrace();
             alert("Import error", ex.getMessage());
@@ -584,62 +728,65 @@ public class CodeSnippetManagerFX extends Application {
         }
     }
 
+    /**
+     * Write the whole library as a static HTML site into a chosen folder. Pages render on
+     * background threads; exporting into the same folder again only redoes changed snippets.
+     */
+    private void exportSite(Stage owner, Button trigger) {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Export Site To Folder");
+        File folder = chooser.showDialog(owner);
+        if (folder == null) return;
+        List<Snippet> all = new ArrayList<>(snippets);
+        trigger.setDisable(true);
+        Thread exporter = new Thread(() -> {
+            String message;
+            try {
+                SiteExporter.Result r = new SiteExporter(folder.toPath()).export(all, (done, total) -> { });
+                message = r.rendered + " pages rendered, " + r.unchanged + " unchanged, " + r.removed + " removed.\n"
+                        + "Open " + new File(folder, "index.html").getAbsolutePath();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                message = "Export failed: " + ex.getMessage();
+            }
+            String done = message;
+            Platform.runLater(() -> {
+                trigger.setDisable(false);
+                alert("Export Site", done);
+            });
+        }, "site-export");
+        exporter.setDaemon(true);
+        exporter.start();
+    }
+
     private void showPrefs(Stage owner) {
-        Alert a = new Alert(Alert.AlertType.INFORMATION, "Preferences are not implemented in this demo.", ButtonType.OK);
+        ButtonType diagnostics = new ButtonType("Diagnostics...");
+        Alert a = new Alert(Alert.AlertType.INFORMATION, "Preferences are not implemented in this demo.", diagnostics, ButtonType.OK);
         a.initOwner(owner);
-        a.showAndWait();
+        if (a.showAndWait().orElse(ButtonType.OK) == diagnostics) DiagnosticsView.show(owner);
     }
 
-    private void saveSnippetToFile(Snippet s) {
+    /**
+     * Write a snippet to the store; on failure the user is told and false comes back, so callers
+     * must not touch the library or the old file.
+     */
+    private boolean saveSnippetToFile(Snippet s) {
         try {
-            if (!storageDir.exists()) storageDir.mkdirs();
-            String name = s.slug() + ".properties";
-            File f = new File(storageDir, name);
-            // if file already exists for new snippet, add timestamp to avoid overwrite
-            if (f.exists() && (s.sourceFile == null || !f.equals(s.sourceFile))) {
-                name = s.slug() + "-" + System.currentTimeMillis() + ".properties";
-                f = new File(storageDir, name);
-            }
-            try (OutputStream os = new FileOutputStream(f)) {
-                Properties p = s.toProperties();
-                p.store(new OutputStreamWriter(os, StandardCharsets.UTF_8), "CodeSnippet");
-            }
-            s.sourceFile = f;
-        } catch (Exception ex) {
+            store.save(s);
+            return true;
+        } catch (IOException ex) {
             ex.printStackTrace();
+            alert("Save error", "Could not save \"" + s.title + "\": " + ex.getMessage());
+            return false;
         }
     }
 
-    private void loadSnippets() {
-        snippets.clear();
-        File[] files = storageDir.listFiles((d, name) -> name.endsWith(".properties"));
-        if (files == null) return;
-        for (File f : files) {
-            try (InputStream is = new FileInputStream(f)) {
-                Properties p = new Properties();
-                p.load(new InputStreamReader(is, StandardCharsets.UTF_8));
-                Snippet s = Snippet.fromProperties(p);
-                s.sourceFile = f;
-                snippets.add(s);
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        }
-        // sort by lastModified desc
-        snippets.sort(Comparator.comparing((Snippet a) -> a.lastModified).reversed());
-    }
-
     private static void alert(String title, String msg) {
         Alert a = new Alert(Alert.AlertType.INFORMATION, msg, ButtonType.OK);
         a.setHeaderText(title);
         a.showAndWait();
     }
 
-    private static String formatDate(Date d) {
-        if (d == null) return "-";
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm").format(d);
-    }
-
     // Simple CSS - embedded for convenience
     private String getCss() {
         return ""
@@ -656,86 +803,97 @@ public class CodeSnippetManagerFX extends Application {
         return css.replace("#", "%23").replace("\n", "");
     }
 
-    public void createGist(String description, boolean isPublic, Map<String, String> files, String githubToken) throws Exception {
-        if (files == null || files.isEmpty()) {
-            throw new IllegalArgumentException("Gist must contain at least one file.");
+    /**
+     * Queue {@code files} as one gist in the outbox; it is published in the background and
+     * retried there until GitHub accepts it.
+     */
+    public void createGist(String description, boolean isPublic, Map<String, String> files) {
+        try {
+            gistOutbox.enqueue(description, isPublic, files);
+        } catch (IllegalArgumentException ex) {
+            alert("Gist", ex.getMessage());
         }
+    }
 
-        JSONObject json = new JSONObject();
-        json.put("description", description);
-        json.put("public", isPublic);
-
-        JSONObject filesJson = new JSONObject();
-        for (Map.Entry<String, String> entry : files.entrySet()) {
-            String filename = entry.getKey();
-            String content = entry.getValue();
-
-            if (content == null || content.isBlank()) {
-                throw new IllegalArgumentException("File content cannot be empty: " + filename);
+    /**
+     * Pull gist edits into the library and push library edits to their gists. Network and disk
+     * work stay off the FX thread; only the list update comes back to it.
+     */
+    private void syncGists(Stage owner, Button trigger) {
+        String token = getGithubToken(owner); // get token (prompt if needed)
+        if (token == null || token.isEmpty()) return;
+        trigger.setDisable(true);
+        gistSync.sync(new ArrayList<>(snippets), token).whenComplete((result, ex) -> {
+            if (ex == null) {
+                try {
+                    for (Snippet s : result.updated.values()) store.save(s);
+                    store.saveAll(result.added, (done, total) -> { });
+                    // only now may the next sync skip what this one pulled
+                    gistSync.commit(result);
+                } catch (IOException io) {
+                    ex = io;
+                }
             }
-
-            // Sanitize filename
-            filename = filename.replaceAll("[^a-zA-Z0-9_\\-\\.]", "_");
-
-            JSONObject fileContent = new JSONObject();
-            fileContent.put("content", content);
-            filesJson.put(filename, fileContent);
-        }
-        json.put("files", filesJson);
-
-        System.out.println("Gist JSON: " + json.toString(2)); // debug
-
-        URL url = new URL("https://api.github.com/gists");
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Authorization", "token " + githubToken);
-        connection.setRequestProperty("Accept", "application/vnd.github+json");
-        connection.setDoOutput(true);
-
-        try (OutputStream os = connection.getOutputStream()) {
-            os.write(json.toString().getBytes(StandardCharsets.UTF_8));
-        }
-
-        int responseCode = connection.getResponseCode();
-        InputStream inputStream = (responseCode == 201) ? connection.getInputStream() : connection.getErrorStream();
-        String response = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-
-        if (responseCode != 201) {
-            System.err.println("GitHub response: " + response);
-            throw new RuntimeException("Failed to create gist: " + responseCode);
-        }
-
-        // Parse response JSON
-        JSONObject responseJson = new JSONObject(response);
-        String gistUrl = responseJson.getString("html_url"); // <-- THIS IS THE LINK
-
-        // Copy to clipboard
-        Clipboard clipboard = Clipboard.getSystemClipboard();
-        ClipboardContent clipboardContent = new ClipboardContent();
-        clipboardContent.putString(gistUrl);
-        clipboard.setContent(clipboardContent);
-
-        // Show JavaFX popup
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle("Gist Created!");
-        alert.setHeaderText("Your Gist was successfully created.");
-        alert.setContentText("Your Gist link has been copied to your clipboard; You can now paste it.\n" + gistUrl);
-        //alert.setContentText("You can view it here:\n" + gistUrl);
-        alert.showAndWait();
-
-        System.out.println("Gist created successfully! Link: " + gistUrl);
+            Throwable error = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            Platform.runLater(() -> {
+                trigger.setDisable(false);
+                if (error != null) {
+                    error.printStackTrace();
+                    alert("Gist sync", "Sync failed: " + error.getMessage());
+                    return;
+                }
+                result.updated.forEach((old, s) -> {
+                    highlightCache.invalidate(old.language(), normalizeLineEndings(old.code));
+                    library.replace(old, s);
+                });
+                library.insertAll(result.added);
+                applyFilter(searchField.getText());
+                System.out.println("Gist sync: " + result.updated.size() + " updated, " + result.added.size() + " added, "
+                        + result.pushed + " pushed, " + result.conflicts + " kept local, " + result.notModified + " not modified");
+            });
+        });
     }
 
+    // Outbox callbacks arrive on its background thread
+    private GistOutbox.Listener gistListener() {
+        return new GistOutbox.Listener() {
+            @Override
+            public void published(GistOutbox.Entry entry, JSONObject gist) {
+                String gistUrl = gist.getString("html_url"); // <-- THIS IS THE LINK
+                System.out.println("Gist created successfully! Link: " + gistUrl);
+                Platform.runLater(() -> {
+                    // Copy to clipboard
+                    Clipboard clipboard = Clipboard.getSystemClipboard();
+                    ClipboardContent clipboardContent = new ClipboardContent();
+                    clipboardContent.putString(gistUrl);
+                    clipboard.setContent(clipboardContent);
+
+                    // Show JavaFX popup
+                    Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                    alert.setTitle("Gist Created!");
+                    alert.setHeaderText("Your Gist was successfully created.");
+                    alert.setContentText("Your Gist link has been copied to your clipboard; You can now paste it.\n" + gistUrl);
+                    alert.show();
+                });
+            }
 
+            @Override
+            public void retrying(GistOutbox.Entry entry, long delayMillis, Throwable cause) {
+                System.out.println("Gist '" + entry.description + "' queued, retry " + entry.attempts + " in " + delayMillis / 1000 + "s: " + cause);
+                // tell the user once; later retries stay quiet
+                String reason = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+                if (entry.attempts == 1) Platform.runLater(() -> alert("Gist queued",
+                        "GitHub could not be reached right now (" + reason + ").\n"
+                                + "The gist is saved and will be published automatically."));
+            }
 
-    // Escape quotes and newlines in code for JSON
-    private String escapeForJson(String s) {
-        if (s == null) return "";
-        return s.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+            @Override
+            public void failed(GistOutbox.Entry entry, Throwable cause) {
+                if (cause instanceof GistException) System.err.println("GitHub response: " + ((GistException) cause).body);
+                cause.printStackTrace();
+                Platform.runLater(() -> alert("Gist", "Could not create the gist '" + entry.description + "': " + cause.getMessage()));
+            }
+        };
     }
 
     private String getGithubToken(Stage owner) {
@@ -764,240 +922,16 @@ public class CodeSnippetManagerFX extends Application {
 
 
 
-    // Model
-    public static class Snippet {
-        public String title;
-        public String code;
-        public String language;
-        public List<String> tags;
-        public String description;
-        public Date dateCreated;
-        public Date lastModified;
-        public File sourceFile;
-
-        public Snippet(String title, String code, String language, String tagsCsv, String description) {
-            this.title = title;
-            this.code = code == null ? "" : code;
-            this.language = language == null ? "" : language;
-            this.tags = new ArrayList<>();
-            if (tagsCsv != null && !tagsCsv.trim().isEmpty()) {
-                for (String t : tagsCsv.split(",\\s*")) if (!t.isBlank()) this.tags.add(t.trim());
-            }
-            this.description = description == null ? "" : description;
-            this.dateCreated = new Date();
-            this.lastModified = new Date();
-        }
-
-        public Properties toProperties() {
-            Properties p = new Properties();
-            p.setProperty("title", title == null ? "" : title);
-            p.setProperty("code", code == null ? "" : Base64.getEncoder().encodeToString(code.getBytes(StandardCharsets.UTF_8)));
-            p.setProperty("language", language == null ? "" : language);
-            p.setProperty("tags", String.join(",", tags));
-            p.setProperty("description", description == null ? "" : description);
-            p.setProperty("dateCreated", Long.toString(dateCreated.getTime()));
-            p.setProperty("lastModified", Long.toString(lastModified.getTime()));
-            return p;
-        }
-
-        public static Snippet fromProperties(Properties p) {
-            String title = p.getProperty("title", "(untitled)");
-            String codeB64 = p.getProperty("code", "");
-            String code = "";
-            if (!codeB64.isEmpty()) {
-                try {
-                    code = new String(Base64.getDecoder().decode(codeB64), StandardCharsets.UTF_8);
-                } catch (Exception ignored) {
-                }
-            }
-            String language = p.getProperty("language", "");
-            String tags = p.getProperty("tags", "");
-            String desc = p.getProperty("description", "");
-            Snippet s = new Snippet(title, code, language, tags, desc);
-            try {
-                s.dateCreated = new Date(Long.parseLong(p.getProperty("dateCreated", Long.toString(new Date().getTime()))));
-            } catch (Exception ignored) {
-            }
-            try {
-                s.lastModified = new Date(Long.parseLong(p.getProperty("lastModified", Long.toString(new Date().getTime()))));
-            } catch (Exception ignored) {
-            }
-            return s;
-        }
-
-        public String slug() {
-            String s = title.toLowerCase().replaceAll("[^a-z0-9]+", "-");
-            if (s.length() > 40) s = s.substring(0, 40);
-            s = s.replaceAll("-+", "-");
-            if (s.startsWith("-")) s = s.substring(1);
-            if (s.isEmpty()) s = "snippet";
-            return s;
-        }
-
-        @Override
-        public String toString() {
-            return title;
-        }
-    }
+    private static final String HIGHLIGHT_CSS =
+            ".keyword { -fx-fill: #0000ff; -fx-font-weight: bold; }" +
+                    ".comment { -fx-fill: #008000; font-style: italic; }" +
+                    ".string { -fx-fill: #a31515; }" +
+                    ".number { -fx-fill: #098658; }" +
+                    ".annotation { -fx-fill: #646695; }" +
+                    ".operator { -fx-fill: #aa22ff; }";
 
-    private static final Map<String, LanguageSyntax> LANGUAGE_SYNTAX = new HashMap<>();
-
-    static {
-        // Java syntax
-        String javaKeywords = "\\b(abstract|assert|boolean|break|byte|case|catch|char|class|const|continue|" +
-                "default|do|double|else|enum|extends|final|finally|float|for|goto|if|implements|import|" +
-                "instanceof|int|interface|long|native|new|package|private|protected|public|return|short|" +
-                "static|strictfp|super|switch|synchronized|this|throw|throws|transient|try|void|volatile|while)\\b";
-        String javaComments = "//[^\n]*|/\\*(.|\\R)*?\\*/";
-        String javaStrings = "\"([^\"\\\\]|\\\\.)*\"";
-        String javaNumbers = "\\b\\d+(\\.\\d+)?\\b";
-        String javaAnnotations = "@\\w+";
-        String javaOperators = "[+\\-*/%=!<>&|^~?:]+";
-        Pattern javaPattern = Pattern.compile(
-                "(?<KEYWORD>" + javaKeywords + ")"
-                        + "|(?<COMMENT>" + javaComments + ")"
-                        + "|(?<STRING>" + javaStrings + ")"
-                        + "|(?<NUMBER>" + javaNumbers + ")"
-                        + "|(?<ANNOTATION>" + javaAnnotations + ")"
-                        + "|(?<OPERATOR>" + javaOperators + ")"
-        );
-        Map<String, String> javaStyles = Map.of(
-                "KEYWORD", "keyword",
-                "COMMENT", "comment",
-                "STRING", "string",
-                "NUMBER", "number",
-                "ANNOTATION", "annotation",
-                "OPERATOR", "operator"
-        );
-        LANGUAGE_SYNTAX.put("java", new LanguageSyntax(javaPattern, javaStyles));
-
-        // Python syntax
-        String pyKeywords = "\\b(False|None|True|and|as|assert|async|await|break|class|continue|def|del|elif|else|except|" +
-                "finally|for|from|global|if|import|in|is|lambda|nonlocal|not|or|pass|raise|return|try|while|with|yield)\\b";
-        String pyComments = "#[^\\n]*";
-        String pyStrings = "\"\"\"(.|\\R)*?\"\"\"|'''(.|\\R)*?'''|\"([^\"\\\\]|\\\\.)*\"|'([^'\\\\]|\\\\.)*'";
-        String pyNumbers = "\\b\\d+(\\.\\d+)?\\b";
-        String pyOperators = "[+\\-*/%=!<>&|^~?:]+";
-        Pattern pyPattern = Pattern.compile(
-                "(?<KEYWORD>" + pyKeywords + ")"
-                        + "|(?<COMMENT>" + pyComments + ")"
-                        + "|(?<STRING>" + pyStrings + ")"
-                        + "|(?<NUMBER>" + pyNumbers + ")"
-                        + "|(?<OPERATOR>" + pyOperators + ")"
-        );
-        Map<String, String> pyStyles = Map.of(
-                "KEYWORD", "keyword",
-                "COMMENT", "comment",
-                "STRING", "string",
-                "NUMBER", "number",
-                "OPERATOR", "operator"
-        );
-        LANGUAGE_SYNTAX.put("python", new LanguageSyntax(pyPattern, pyStyles));
-
-        // JavaScript syntax
-        String jsKeywords = "\\b(break|case|catch|class|const|continue|debugger|default|delete|do|else|export|extends|" +
-                "finally|for|function|if|import|in|instanceof|let|new|return|super|switch|this|throw|try|typeof|var|void|while|with|yield)\\b";
-        String jsComments = "//[^\\n]*|/\\*(.|\\R)*?\\*/";
-        String jsStrings = "\"([^\"\\\\]|\\\\.)*\"|'([^'\\\\]|\\\\.)*'|`([^`\\\\]|\\\\.)*`";
-        String jsNumbers = "\\b\\d+(\\.\\d+)?\\b";
-        String jsOperators = "[+\\-*/%=!<>&|^~?:]+";
-        Pattern jsPattern = Pattern.compile(
-                "(?<KEYWORD>" + jsKeywords + ")"
-                        + "|(?<COMMENT>" + jsComments + ")"
-                        + "|(?<STRING>" + jsStrings + ")"
-                        + "|(?<NUMBER>" + jsNumbers + ")"
-                        + "|(?<OPERATOR>" + jsOperators + ")"
-        );
-        Map<String, String> jsStyles = Map.of(
-                "KEYWORD", "keyword",
-                "COMMENT", "comment",
-                "STRING", "string",
-                "NUMBER", "number",
-                "OPERATOR", "operator"
-        );
-        LANGUAGE_SYNTAX.put("javascript", new LanguageSyntax(jsPattern, jsStyles));
-
-        // C++ syntax
-        String cppKeywords = "\\b(alignas|alignof|and|and_eq|asm|atomic_cancel|atomic_commit|atomic_noexcept|" +
-                "auto|bitand|bitor|bool|break|case|catch|char|char16_t|char32_t|class|compl|const|constexpr|const_cast|continue|" +
-                "decltype|default|delete|do|double|dynamic_cast|else|enum|explicit|export|extern|false|float|for|friend|goto|if|" +
-                "inline|int|long|mutable|namespace|new|noexcept|not|not_eq|nullptr|operator|or|or_eq|private|protected|public|" +
-                "register|reinterpret_cast|return|short|signed|sizeof|static|static_assert|static_cast|struct|switch|template|" +
-                "this|thread_local|throw|true|try|typedef|typeid|typename|union|unsigned|using|virtual|void|volatile|wchar_t|while|xor|xor_eq)\\b";
-        String cppComments = "//[^\\n]*|/\\*(.|\\R)*?\\*/";
-        String cppStrings = "\"([^\"\\\\]|\\\\.)*\"|'([^'\\\\]|\\\\.)*'";
-        String cppNumbers = "\\b\\d+(\\.\\d+)?\\b";
-        String cppOperators = "[+\\-*/%=!<>&|^~?:]+";
-        Pattern cppPattern = Pattern.compile(
-                "(?<KEYWORD>" + cppKeywords + ")"
-                        + "|(?<COMMENT>" + cppComments + ")"
-                        + "|(?<STRING>" + cppStrings + ")"
-                        + "|(?<NUMBER>" + cppNumbers + ")"
-                        + "|(?<OPERATOR>" + cppOperators + ")"
-        );
-        Map<String, String> cppStyles = Map.of(
-                "KEYWORD", "keyword",
-                "COMMENT", "comment",
-                "STRING", "string",
-                "NUMBER", "number",
-                "OPERATOR", "operator"
-        );
-        LANGUAGE_SYNTAX.put("cpp", new LanguageSyntax(cppPattern, cppStyles));
-
-        // SQL syntax
-        String sqlKeywords = "\\b(SELECT|FROM|WHERE|INSERT|INTO|VALUES|UPDATE|SET|DELETE|CREATE|TABLE|ALTER|DROP|JOIN|" +
-                "INNER|LEFT|RIGHT|FULL|ON|AS|AND|OR|NOT|NULL|DISTINCT|GROUP|BY|ORDER|HAVING|LIMIT|OFFSET)\\b";
-        String sqlComments = "--[^\\n]*|/\\*(.|\\R)*?\\*/";
-        String sqlStrings = "'([^'\\\\]|\\\\.)*'";
-        String sqlNumbers = "\\b\\d+(\\.\\d+)?\\b";
-        Pattern sqlPattern = Pattern.compile(
-                "(?<KEYWORD>" + sqlKeywords + ")"
-                        + "|(?<COMMENT>" + sqlComments + ")"
-                        + "|(?<STRING>" + sqlStrings + ")"
-                        + "|(?<NUMBER>" + sqlNumbers + ")"
-        );
-        Map<String, String> sqlStyles = Map.of(
-                "KEYWORD", "keyword",
-                "COMMENT", "comment",
-                "STRING", "string",
-                "NUMBER", "number"
-        );
-        LANGUAGE_SYNTAX.put("sql", new LanguageSyntax(sqlPattern, sqlStyles));
-
-        // HTML syntax
-        String htmlTags = "</?[a-zA-Z][^>]*>";
-        String htmlComments = "<!--(.|\\R)*?-->";
-        String htmlStrings = "\"([^\"]*)\"|'([^']*)'";
-        Pattern htmlPattern = Pattern.compile(
-                "(?<TAG>" + htmlTags + ")"
-                        + "|(?<COMMENT>" + htmlComments + ")"
-                        + "|(?<STRING>" + htmlStrings + ")"
-        );
-        Map<String, String> htmlStyles = Map.of(
-                "TAG", "keyword",
-                "COMMENT", "comment",
-                "STRING", "string"
-        );
-        LANGUAGE_SYNTAX.put("html", new LanguageSyntax(htmlPattern, htmlStyles));
-
-        // CSS syntax
-        String cssSelectors = "[.#]?[a-zA-Z0-9_-]+";
-        String cssProperties = "\\b([a-z-]+)\\b(?=\\s*:)";
-        String cssValues = "[^;{}]+";
-        String cssComments = "/\\*(.|\\R)*?\\*/";
-        Pattern cssPattern = Pattern.compile(
-                "(?<PROPERTY>" + cssProperties + ")"
-                        + "|(?<VALUE>" + cssValues + ")"
-                        + "|(?<COMMENT>" + cssComments + ")"
-                        + "|(?<SELECTOR>" + cssSelectors + ")"
-        );
-        Map<String, String> cssStyles = Map.of(
-                "PROPERTY", "keyword",
-                "VALUE", "string",
-                "COMMENT", "comment",
-                "SELECTOR", "annotation"
-        );
-        LANGUAGE_SYNTAX.put("css", new LanguageSyntax(cssPattern, cssStyles));
+    static LanguageSyntax syntaxFor(String language) {
+        return SyntaxRegistry.forLanguage(language);
     }
 }
 
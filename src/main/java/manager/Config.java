@@ -19,5 +19,12 @@ public class Config {
     public static String getGithubToken() {
         return PROPS.getProperty("github.token");
     }
+
+    /**
+     * Gists API base URL: the {@code github.api.url} system property, then the config file, then api.github.com.
+     */
+    public static String getGithubApiUrl() {
+        return System.getProperty("github.api.url", PROPS.getProperty("github.api.url", "https://api.github.com"));
+    }
 }
 
@@ -0,0 +1,117 @@
+package manager;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
+
+/**
+ * Live percentiles for every {@link Metrics} histogram, refreshed once a second while the
+ * window is open, and a button that writes the session's Flight Recorder data to a file.
+ */
+public class DiagnosticsView {
+    private static final Duration REFRESH = Duration.seconds(1);
+
+    public static void show(Stage owner) {
+        Stage stage = new Stage();
+        stage.initOwner(owner);
+        stage.setTitle("Diagnostics");
+
+        TableView<Metrics.Histogram> table = new TableView<>(FXCollections.observableArrayList(Metrics.ALL));
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        table.getColumns().add(column("Operation", h -> h.name));
+        table.getColumns().add(column("Count", h -> Long.toString(h.count())));
+        table.getColumns().add(column("p50", h -> value(h, h.percentile(0.50))));
+        table.getColumns().add(column("p90", h -> value(h, h.percentile(0.90))));
+        table.getColumns().add(column("p99", h -> value(h, h.percentile(0.99))));
+        table.getColumns().add(column("Max", h -> value(h, h.max())));
+        table.getColumns().add(column("Mean", h -> value(h, h.mean())));
+        table.getColumns().get(0).setPrefWidth(160);
+
+        Timeline refresh = new Timeline(new KeyFrame(REFRESH, e -> table.refresh()));
+        refresh.setCycleCount(Timeline.INDEFINITE);
+        refresh.play();
+        stage.setOnHidden(e -> refresh.stop());
+
+        Label status = new Label(Metrics.isRecording()
+                ? "Flight Recorder is keeping the last 15 minutes of this session."
+                : "Flight Recorder is not available in this runtime.");
+        status.setWrapText(true);
+
+        Button reset = new Button("Reset");
+        reset.setOnAction(e -> {
+            Metrics.ALL.forEach(Metrics.Histogram::reset);
+            table.refresh();
+        });
+
+        Button dump = new Button("Dump JFR Recording...");
+        dump.setDisable(!Metrics.isRecording());
+        dump.setOnAction(e -> {
+            FileChooser fc = new FileChooser();
+            fc.setTitle("Save Flight Recording");
+            fc.setInitialFileName("codemanager-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.now()) + ".jfr");
+            fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Flight Recording", "*.jfr"));
+            File f = fc.showSaveDialog(stage);
+            if (f == null) return;
+            dump.setDisable(true);
+            status.setText("Writing " + f.getName() + "...");
+            // a dump copies the recording's chunks, which can take a moment on long sessions
+            Thread writer = new Thread(() -> {
+                String message;
+                try {
+                    Metrics.dumpRecording(f.toPath());
+                    message = "Saved " + f.getAbsolutePath() + " (open it in JDK Mission Control).";
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    message = "Could not save the recording: " + ex.getMessage();
+                }
+                String done = message;
+                Platform.runLater(() -> {
+                    status.setText(done);
+                    dump.setDisable(false);
+                });
+            }, "jfr-dump");
+            writer.setDaemon(true);
+            writer.start();
+        });
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox actions = new HBox(8, reset, spacer, dump);
+        actions.setAlignment(Pos.CENTER_LEFT);
+        VBox layout = new VBox(8, table, status, actions);
+        VBox.setVgrow(table, Priority.ALWAYS);
+        layout.setPadding(new Insets(12));
+        stage.setScene(new Scene(layout, 680, 340));
+        stage.show();
+    }
+
+    private static TableColumn<Metrics.Histogram, String> column(String title, Function<Metrics.Histogram, String> value) {
+        TableColumn<Metrics.Histogram, String> c = new TableColumn<>(title);
+        c.setCellValueFactory(cd -> new ReadOnlyStringWrapper(value.apply(cd.getValue())));
+        c.setSortable(false);
+        return c;
+    }
+
+    private static String value(Metrics.Histogram h, long v) {
+        return h.count() == 0 ? "-" : h.unit.format(v);
+    }
+}
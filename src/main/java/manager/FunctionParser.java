@@ -15,8 +15,14 @@ public class FunctionParser {
      * Parse all functions from a Java file.
      */
     public static List<ProjectFunction> parseFunctions(Path filePath, String projectName) throws IOException {
+        return parseFunctions(new String(Files.readAllBytes(filePath)), filePath, projectName);
+    }
+
+    /**
+     * Parse all functions from the already-read content of a Java file.
+     */
+    public static List<ProjectFunction> parseFunctions(String content, Path filePath, String projectName) {
         List<ProjectFunction> functions = new ArrayList<>();
-        String content = new String(Files.readAllBytes(filePath));
 
         Matcher matcher = FUNCTION_PATTERN.matcher(content);
         while (matcher.find()) {
@@ -0,0 +1,188 @@
+package manager;
+
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * GitHub gists API on one shared {@link HttpClient}.
+ * <p>
+ * Calls are asynchronous and never block the caller. The shared client keeps connections open
+ * between calls and negotiates HTTP/2 where the server supports it. The base URL comes from
+ * {@link Config#getGithubApiUrl()}, so the client can be pointed at GitHub Enterprise or at a
+ * local stand-in server.
+ */
+public class GistClient {
+    private static final HttpClient SHARED = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient http;
+    private final String baseUrl;
+
+    public GistClient() {
+        this(Config.getGithubApiUrl());
+    }
+
+    public GistClient(String baseUrl) {
+        this(SHARED, baseUrl);
+    }
+
+    GistClient(HttpClient http, String baseUrl) {
+        this.http = http;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * Create one gist holding all {@code files} (file name to content).
+     *
+     * @return the created gist as returned by the API ({@code id}, {@code html_url}, ...)
+     */
+    public CompletableFuture<JSONObject> createGist(String description, boolean isPublic, Map<String, String> files, String token) {
+        JSONObject json;
+        try {
+            json = gistJson(description, isPublic, files);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = request("/gists", token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+                .build();
+        return send(request, "Failed to create gist", 201).thenApply(r -> new JSONObject(r.body()));
+    }
+
+    /**
+     * Conditional GET of an API path (or an absolute URL from a {@code Link} header). With an
+     * {@code etag} from an earlier response, an unchanged resource comes back as an empty 304.
+     */
+    public CompletableFuture<HttpResponse<String>> get(String pathOrUrl, String etag, String token) {
+        HttpRequest.Builder b = request(pathOrUrl, token).GET();
+        if (etag != null) b.header("If-None-Match", etag);
+        return send(b.build(), "Failed to fetch " + pathOrUrl, 200, 304);
+    }
+
+    /**
+     * Replace the content of the given files of an existing gist; files not listed stay as they are.
+     *
+     * @return the updated gist and its new ETag in the response headers
+     */
+    public CompletableFuture<HttpResponse<String>> updateFiles(String gistId, Map<String, String> files, String token) {
+        JSONObject filesJson = new JSONObject();
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            filesJson.put(e.getKey(), new JSONObject().put("content", e.getValue()));
+        }
+        HttpRequest request = request("/gists/" + gistId, token)
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(new JSONObject().put("files", filesJson).toString()))
+                .build();
+        return send(request, "Failed to update gist " + gistId, 200);
+    }
+
+    /**
+     * The {@code rel="next"} target of a paged response, or null on the last page.
+     */
+    public static String nextLink(HttpResponse<?> response) {
+        for (String link : response.headers().allValues("Link")) {
+            for (String part : link.split(",")) {
+                int lt = part.indexOf('<'), gt = part.indexOf('>');
+                if (lt >= 0 && gt > lt && part.substring(gt).contains("rel=\"next\"")) return part.substring(lt + 1, gt);
+            }
+        }
+        return null;
+    }
+
+    HttpRequest.Builder request(String pathOrUrl, String token) {
+        String url = pathOrUrl.startsWith("http://") || pathOrUrl.startsWith("https://") ? pathOrUrl : baseUrl + pathOrUrl;
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/vnd.github+json");
+        if (token != null && !token.isEmpty()) b.header("Authorization", "token " + token);
+        return b;
+    }
+
+    // Completes exceptionally with a GistException unless the response has one of the expected statuses
+    CompletableFuture<HttpResponse<String>> send(HttpRequest request, String failure, int... expected) {
+        long start = System.nanoTime();
+        Metrics.GistEvent event = new Metrics.GistEvent();
+        event.begin();
+        event.method = request.method();
+        event.uri = request.uri().toString();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((r, ex) -> {
+            // failed connections count too; they are the slow round trips worth seeing
+            event.status = r != null ? r.statusCode() : 0;
+            event.commit();
+            Metrics.GIST.recordSince(start);
+        }).thenCompose(r -> {
+            for (int status : expected) {
+                if (r.statusCode() == status) return CompletableFuture.completedFuture(r);
+            }
+            return CompletableFuture.failedFuture(new GistException(failure, r.statusCode(), r.headers(), r.body()));
+        });
+    }
+
+    static JSONObject gistJson(String description, boolean isPublic, Map<String, String> files) {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("Gist must contain at least one file.");
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("description", description);
+        json.put("public", isPublic);
+
+        JSONObject filesJson = new JSONObject();
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            String filename = entry.getKey();
+            String content = entry.getValue();
+
+            if (content == null || content.isBlank()) {
+                throw new IllegalArgumentException("File content cannot be empty: " + filename);
+            }
+
+            JSONObject fileContent = new JSONObject();
+            fileContent.put("content", content);
+            filesJson.put(sanitizeFileName(filename), fileContent);
+        }
+        json.put("files", filesJson);
+        return json;
+    }
+
+    /**
+     * One gist file per snippet, named after its title with an extension for its language.
+     * Titles that collide get a numeric suffix so no snippet overwrites another.
+     */
+    public static Map<String, String> files(List<Snippet> snippets) {
+        Map<String, String> files = new LinkedHashMap<>();
+        for (Snippet s : snippets) {
+            String base = sanitizeFileName(s.title == null || s.title.isBlank() ? "snippet" : s.title);
+            String ext = extension(s.language());
+            String name = base + ext;
+            for (int n = 2; files.containsKey(name); n++) name = base + "-" + n + ext;
+            files.put(name, s.code);
+        }
+        return files;
+    }
+
+    static String sanitizeFileName(String filename) {
+        return filename.replaceAll("[^a-zA-Z0-9_\\-\\.]", "_");
+    }
+
+    private static String extension(String language) {
+        switch (language == null ? "" : language.toLowerCase().trim()) {
+            case "java": return ".java";
+            case "python": return ".py";
+            case "javascript": return ".js";
+            case "cpp": return ".cpp";
+            case "sql": return ".sql";
+            default: return ".txt";
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package manager;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+
+/**
+ * A gists API call answered with an unexpected status. Keeps the response headers, which carry
+ * GitHub's {@code Retry-After} and rate-limit information.
+ */
+public class GistException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public final int status;
+    // HttpHeaders is not serializable; a deserialized exception has none
+    public final transient HttpHeaders headers;
+    public final String body;
+
+    public GistException(String message, int status, HttpHeaders headers, String body) {
+        super(message + ": " + status);
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+}
@@ -0,0 +1,286 @@
+package manager;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Durable queue of gists waiting to be published.
+ * <p>
+ * Every gist is written to {@code outbox/} before the first attempt and removed only once GitHub
+ * has accepted it, so nothing is lost to a dropped connection, a rate limit or a restart. One
+ * background thread publishes due entries oldest first. A {@code Retry-After} or exhausted
+ * {@code x-ratelimit-remaining} pauses the whole queue until GitHub allows requests again; other
+ * transient failures (network errors, 5xx, 429) retry with exponential backoff and jitter.
+ * Other 4xx answers are permanent: they are reported without retrying and the entry is moved
+ * to {@code outbox/failed/} for inspection.
+ */
+public class GistOutbox {
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 15 * 60_000;
+    private static final int MAX_ATTEMPTS = 20;
+
+    public interface Listener {
+        void published(Entry entry, JSONObject gist);
+
+        void retrying(Entry entry, long delayMillis, Throwable cause);
+
+        void failed(Entry entry, Throwable cause);
+    }
+
+    public static class Entry {
+        public final String id;
+        public final String description;
+        public final boolean isPublic;
+        public final Map<String, String> files;
+        public int attempts;
+        // epoch millis before which the entry is not retried
+        public long notBefore;
+
+        Entry(String id, String description, boolean isPublic, Map<String, String> files) {
+            this.id = id;
+            this.description = description;
+            this.isPublic = isPublic;
+            this.files = files;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("description", description);
+            json.put("public", isPublic);
+            json.put("files", new JSONObject(files));
+            json.put("attempts", attempts);
+            json.put("notBefore", notBefore);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) {
+            Map<String, String> files = new LinkedHashMap<>();
+            JSONObject f = json.getJSONObject("files");
+            for (String name : f.keySet()) files.put(name, f.getString(name));
+            Entry e = new Entry(json.getString("id"), json.optString("description", ""), json.optBoolean("public", true), files);
+            e.attempts = json.optInt("attempts", 0);
+            e.notBefore = json.optLong("notBefore", 0);
+            return e;
+        }
+    }
+
+    private final Path dir;
+    private final GistClient client;
+    private final Supplier<String> token;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "gist-outbox");
+        t.setDaemon(true);
+        return t;
+    });
+    // only touched on the scheduler thread
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private long pausedUntil;
+    private ScheduledFuture<?> wakeUp;
+    private int sequence;
+
+    public GistOutbox(Path dir, GistClient client, Supplier<String> token, Listener listener) {
+        this.dir = dir;
+        this.client = client;
+        this.token = token;
+        this.listener = listener;
+    }
+
+    /**
+     * Pick up entries left over from earlier runs and start publishing.
+     */
+    public void start() {
+        scheduler.execute(() -> {
+            load();
+            drain();
+        });
+    }
+
+    /**
+     * Queue one gist. Invalid input is rejected right away; everything else is persisted and
+     * published in the background.
+     */
+    public void enqueue(String description, boolean isPublic, Map<String, String> files) {
+        GistClient.gistJson(description, isPublic, files);
+        Map<String, String> copy = new LinkedHashMap<>(files);
+        scheduler.execute(() -> {
+            // zero-padded so file names sort in queue order
+            Entry e = new Entry(String.format("%013d-%04d", System.currentTimeMillis(), sequence++ % 10_000), description, isPublic, copy);
+            try {
+                persist(e);
+            } catch (IOException ex) {
+                listener.failed(e, ex);
+                return;
+            }
+            pending.put(e.id, e);
+            drain();
+        });
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void load() {
+        if (!Files.isDirectory(dir)) return;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.json")) {
+            ds.forEach(files::add);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        files.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        for (Path p : files) {
+            try {
+                Entry e = Entry.fromJson(new JSONObject(Files.readString(p, StandardCharsets.UTF_8)));
+                pending.put(e.id, e);
+            } catch (Exception ex) {
+                System.err.println("Skipping unreadable outbox entry " + p + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    // Publish every due entry, then sleep until the next one is due
+    private void drain() {
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (now < pausedUntil) {
+                wakeUpIn(pausedUntil - now);
+                return;
+            }
+            Entry next = null;
+            long soonest = Long.MAX_VALUE;
+            for (Entry e : pending.values()) {
+                if (e.notBefore <= now) {
+                    next = e;
+                    break;
+                }
+                soonest = Math.min(soonest, e.notBefore);
+            }
+            if (next == null) {
+                if (soonest != Long.MAX_VALUE) wakeUpIn(soonest - now);
+                return;
+            }
+            attempt(next);
+        }
+    }
+
+    private void wakeUpIn(long delayMillis) {
+        if (wakeUp != null) wakeUp.cancel(false);
+        wakeUp = scheduler.schedule(this::drain, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    private void attempt(Entry e) {
+        try {
+            JSONObject gist = client.createGist(e.description, e.isPublic, e.files, token.get()).join();
+            remove(e);
+            listener.published(e, gist);
+        } catch (CompletionException | CancellationException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            long delay = e.attempts + 1 < MAX_ATTEMPTS ? retryDelay(cause, e.attempts, System.currentTimeMillis()) : -1;
+            if (delay < 0) {
+                moveToFailed(e);
+                listener.failed(e, cause);
+                return;
+            }
+            e.attempts++;
+            e.notBefore = System.currentTimeMillis() + delay;
+            try {
+                persist(e);
+            } catch (IOException io) {
+                io.printStackTrace();
+            }
+            listener.retrying(e, delay, cause);
+        }
+    }
+
+    /**
+     * How long to wait before retrying after {@code cause}, or -1 if retrying cannot help.
+     */
+    private long retryDelay(Throwable cause, int attempts, long now) {
+        if (cause instanceof GistException) {
+            GistException g = (GistException) cause;
+            long hinted = rateLimitDelay(g.headers, now);
+            if (hinted >= 0) {
+                // the limit applies to every request, not only this one
+                pausedUntil = now + hinted;
+                return hinted;
+            }
+            if (g.status >= 500 || g.status == 429 || g.status == 408) return backoff(attempts);
+            return -1;
+        }
+        // connect failures, timeouts, resets
+        if (cause instanceof IOException) return backoff(attempts);
+        return -1;
+    }
+
+    // Delay GitHub asks for via Retry-After or an exhausted rate limit, or -1 if it gives none
+    static long rateLimitDelay(HttpHeaders headers, long now) {
+        Optional<String> retryAfter = headers.firstValue("Retry-After");
+        if (retryAfter.isPresent()) {
+            String v = retryAfter.get().trim();
+            try {
+                return Math.max(0, Long.parseLong(v) * 1000);
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    long at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                    return Math.max(0, at - now);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+        if ("0".equals(headers.firstValue("x-ratelimit-remaining").orElse(null))) {
+            try {
+                long reset = Long.parseLong(headers.firstValue("x-ratelimit-reset").orElse("")) * 1000;
+                // a second of slack for clock skew
+                return Math.max(0, reset - now) + 1000;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return -1;
+    }
+
+    // Exponential backoff with "equal jitter": half the window fixed, half random
+    static long backoff(int attempts) {
+        long window = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts, 20));
+        return window / 2 + ThreadLocalRandom.current().nextLong(window / 2 + 1);
+    }
+
+    private void persist(Entry e) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(e.id + ".json");
+        Path tmp = dir.resolve(e.id + ".json.tmp");
+        Files.writeString(tmp, e.toJson().toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void moveToFailed(Entry e) {
+        pending.remove(e.id);
+        try {
+            Path failed = Files.createDirectories(dir.resolve("failed"));
+            Files.move(dir.resolve(e.id + ".json"), failed.resolve(e.id + ".json"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void remove(Entry e) {
+        pending.remove(e.id);
+        try {
+            Files.deleteIfExists(dir.resolve(e.id + ".json"));
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
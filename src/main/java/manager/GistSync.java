@@ -0,0 +1,248 @@
+package manager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Two-way sync between library snippets and the user's gists, one snippet per gist file.
+ * <p>
+ * Pulling walks the paged gist listing with {@code If-None-Match}, so unchanged pages cost an
+ * empty 304. Only gists whose {@code updated_at} moved are fetched again, also conditionally,
+ * and only files whose content differs from the last synced version are applied. Pushing sends
+ * one PATCH per gist with just the files that were edited locally since the last sync. When a
+ * file changed on both sides, the local edit wins and is pushed.
+ * <p>
+ * ETags, timestamps and a hash of every file as last synced are kept in {@code state.json}, so
+ * the next sync after a restart is as cheap as the one before it. A sync works on a copy of that
+ * state, which the caller {@link #commit commits} once it has saved the result; a sync that fails
+ * or is never committed leaves the state as it was, and the next one repeats its work.
+ */
+public class GistSync {
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Library changes for the caller to apply on the FX thread.
+     */
+    public static class Result {
+        // previous version -> version with the remote content
+        public final Map<Snippet, Snippet> updated = new LinkedHashMap<>();
+        public final List<Snippet> added = new ArrayList<>();
+        public int pushed;
+        public int conflicts;
+        // requests answered with 304 Not Modified
+        public int notModified;
+        // the sync state once this result is applied
+        private JSONObject state;
+    }
+
+    private final GistClient client;
+    private final Path stateFile;
+    private JSONObject state;
+
+    public GistSync(GistClient client, Path dir) {
+        this.client = client;
+        this.stateFile = dir.resolve("state.json");
+    }
+
+    /**
+     * Sync {@code library} (a snapshot of the current snippets) in the background.
+     */
+    public CompletableFuture<Result> sync(List<Snippet> library, String token) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return syncNow(library, token);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, runnable -> {
+            Thread t = new Thread(runnable, "gist-sync");
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    private synchronized Result syncNow(List<Snippet> library, String token) throws IOException {
+        if (state == null) state = loadState();
+        Result result = new Result();
+        result.state = new JSONObject(state.toString());
+        Map<String, Snippet> linked = new HashMap<>();
+        for (Snippet s : library) {
+            if (s.gistId != null) linked.put(key(s.gistId, s.gistFile), s);
+        }
+        pull(linked, token, result);
+        push(library, token, result);
+        return result;
+    }
+
+    /**
+     * Record {@code result} as synced, once the caller has saved the snippets it added and
+     * updated. Until then its files count as not pulled yet.
+     */
+    public synchronized void commit(Result result) throws IOException {
+        state = result.state;
+        saveState();
+    }
+
+    private void pull(Map<String, Snippet> linked, String token, Result result) {
+        JSONObject pages = section(result.state, "pages");
+        JSONObject gists = section(result.state, "gists");
+        String url = "/gists?per_page=" + PAGE_SIZE;
+        while (url != null) {
+            JSONObject page = pages.optJSONObject(url);
+            HttpResponse<String> r = client.get(url, page == null ? null : page.optString("etag", null), token).join();
+            if (r.statusCode() == 304) {
+                result.notModified++;
+            } else {
+                // keep only what the next sync needs to decide which gists changed
+                JSONArray summary = new JSONArray();
+                for (Object o : new JSONArray(r.body())) {
+                    JSONObject g = (JSONObject) o;
+                    summary.put(new JSONObject().put("id", g.getString("id")).put("updated_at", g.optString("updated_at")));
+                }
+                page = new JSONObject().put("etag", r.headers().firstValue("ETag").orElse(null))
+                        .put("next", GistClient.nextLink(r)).put("gists", summary);
+                pages.put(url, page);
+            }
+            for (Object o : page.getJSONArray("gists")) {
+                JSONObject g = (JSONObject) o;
+                JSONObject known = gists.optJSONObject(g.getString("id"));
+                if (known == null || !g.optString("updated_at").equals(known.optString("updated_at"))) {
+                    pullGist(g.getString("id"), g.optString("updated_at"), linked, token, result);
+                }
+            }
+            url = page.optString("next", null);
+        }
+    }
+
+    private void pullGist(String id, String updatedAt, Map<String, Snippet> linked, String token, Result result) {
+        JSONObject gists = section(result.state, "gists");
+        JSONObject known = gists.optJSONObject(id);
+        HttpResponse<String> r = client.get("/gists/" + id, known == null ? null : known.optString("etag", null), token).join();
+        if (r.statusCode() == 304) {
+            known.put("updated_at", updatedAt);
+            result.notModified++;
+            return;
+        }
+        JSONObject gist = new JSONObject(r.body());
+        JSONObject syncedHashes = known == null ? new JSONObject() : known.getJSONObject("files");
+        JSONObject files = gist.getJSONObject("files");
+        for (String name : files.keySet()) {
+            JSONObject file = files.getJSONObject(name);
+            if (file.optBoolean("truncated")) {
+                System.out.println("Skipping truncated gist file " + id + "/" + name);
+                continue;
+            }
+            String content = file.optString("content", "");
+            String hash = hash(content);
+            if (hash.equals(syncedHashes.optString(name, null))) continue;
+
+            Snippet local = linked.get(key(id, name));
+            if (local == null) {
+                Snippet s = new Snippet(title(name), content, language(file), "gist", gist.optString("description", ""));
+                s.gistId = id;
+                s.gistFile = name;
+                result.added.add(s);
+            } else if (!hash(local.code).equals(syncedHashes.optString(name, null)) && known != null) {
+                // edited on both sides since the last sync; keep the local edit, push() sends it
+                result.conflicts++;
+                continue;
+            } else if (!hash(local.code).equals(hash)) {
+                Snippet s = local.withCode(content);
+                s.gistId = id;
+                s.gistFile = name;
+                s.sourceFile = local.sourceFile;
+                result.updated.put(local, s);
+            }
+            syncedHashes.put(name, hash);
+        }
+        gists.put(id, new JSONObject()
+                .put("etag", r.headers().firstValue("ETag").orElse(null))
+                .put("updated_at", gist.optString("updated_at"))
+                .put("files", syncedHashes));
+    }
+
+    private void push(List<Snippet> library, String token, Result result) {
+        JSONObject gists = section(result.state, "gists");
+        Map<String, Map<String, String>> edits = new LinkedHashMap<>();
+        for (Snippet snapshot : library) {
+            // compare what the library holds after this sync's pull, not before it
+            Snippet s = result.updated.getOrDefault(snapshot, snapshot);
+            if (s.gistId == null) continue;
+            JSONObject known = gists.optJSONObject(s.gistId);
+            String synced = known == null ? null : known.getJSONObject("files").optString(s.gistFile, null);
+            if (synced != null && !synced.equals(hash(s.code))) {
+                edits.computeIfAbsent(s.gistId, k -> new LinkedHashMap<>()).put(s.gistFile, s.code);
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> e : edits.entrySet()) {
+            HttpResponse<String> r = client.updateFiles(e.getKey(), e.getValue(), token).join();
+            JSONObject gist = new JSONObject(r.body());
+            JSONObject known = gists.getJSONObject(e.getKey());
+            JSONObject hashes = known.getJSONObject("files");
+            for (Map.Entry<String, String> f : e.getValue().entrySet()) hashes.put(f.getKey(), hash(f.getValue()));
+            known.put("etag", r.headers().firstValue("ETag").orElse(null));
+            known.put("updated_at", gist.optString("updated_at"));
+            result.pushed += e.getValue().size();
+        }
+    }
+
+    private static JSONObject section(JSONObject state, String name) {
+        JSONObject s = state.optJSONObject(name);
+        if (s == null) {
+            s = new JSONObject();
+            state.put(name, s);
+        }
+        return s;
+    }
+
+    private JSONObject loadState() {
+        try {
+            if (Files.exists(stateFile)) return new JSONObject(Files.readString(stateFile, StandardCharsets.UTF_8));
+        } catch (Exception ex) {
+            System.err.println("Ignoring unreadable gist sync state: " + ex.getMessage());
+        }
+        return new JSONObject();
+    }
+
+    private void saveState() throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        Files.writeString(tmp, state.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(String gistId, String file) {
+        return gistId + "/" + file;
+    }
+
+    private static String title(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private static String language(JSONObject file) {
+        String language = file.optString("language", "");
+        return language.equalsIgnoreCase("c++") ? "cpp" : language.toLowerCase();
+    }
+
+    static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
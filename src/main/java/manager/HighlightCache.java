@@ -0,0 +1,87 @@
+package manager;
+
+import org.fxmisc.richtext.model.StyleSpans;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of computed highlighting, keyed by language plus a 64-bit hash of the code.
+ * <p>
+ * The bound is the total number of spans held rather than the number of entries, so a few huge
+ * snippets cannot crowd out memory the way a fixed entry count would allow.
+ */
+public class HighlightCache {
+    private final long maxSpans;
+    private long totalSpans;
+    private final LinkedHashMap<Key, StyleSpans<Collection<String>>> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    public HighlightCache(long maxSpans) {
+        this.maxSpans = maxSpans;
+    }
+
+    public synchronized StyleSpans<Collection<String>> get(String language, String code) {
+        return entries.get(new Key(language, code));
+    }
+
+    public synchronized boolean contains(String language, String code) {
+        return entries.containsKey(new Key(language, code));
+    }
+
+    public synchronized void put(String language, String code, StyleSpans<Collection<String>> spans) {
+        if (spans.getSpanCount() > maxSpans) return;
+        StyleSpans<Collection<String>> old = entries.put(new Key(language, code), spans);
+        if (old != null) totalSpans -= old.getSpanCount();
+        totalSpans += spans.getSpanCount();
+
+        Iterator<Map.Entry<Key, StyleSpans<Collection<String>>>> it = entries.entrySet().iterator();
+        while (totalSpans > maxSpans && it.hasNext()) {
+            totalSpans -= it.next().getValue().getSpanCount();
+            it.remove();
+        }
+    }
+
+    /**
+     * Drop the entry for content that has just been edited away.
+     */
+    public synchronized void invalidate(String language, String code) {
+        StyleSpans<Collection<String>> old = entries.remove(new Key(language, code));
+        if (old != null) totalSpans -= old.getSpanCount();
+    }
+
+    private static final class Key {
+        final String language;
+        final long hash;
+        final int length;
+
+        Key(String language, String code) {
+            this.language = language == null ? "" : language.toLowerCase().trim();
+            this.hash = hash(code);
+            this.length = code.length();
+        }
+
+        // FNV-1a over the UTF-16 chars
+        private static long hash(String s) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && length == k.length && language.equals(k.language);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + language.hashCode();
+        }
+    }
+}
@@ -1,15 +1,59 @@
 package manager;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class LanguageSyntax {
     public final Pattern pattern;
     public final Map<String, String> styleMap;
+    // style class per capturing-group index, null for groups that are not styled
+    public final String[] groupStyles;
+    // linear-time lexer with the same token classes; null where only the regex exists
+    public final SyntaxLexer lexer;
+    // SyntaxLexer token type per capturing-group index, 0 for groups that are not styled
+    private final int[] groupTypes;
 
     public LanguageSyntax(Pattern pattern, Map<String, String> styleMap) {
+        this(pattern, styleMap, null);
+    }
+
+    public LanguageSyntax(Pattern pattern, Map<String, String> styleMap, SyntaxLexer lexer) {
         this.pattern = pattern;
         this.styleMap = styleMap;
+        this.lexer = lexer;
+        this.groupStyles = new String[pattern.matcher("").groupCount() + 1];
+        pattern.namedGroups().forEach((name, index) -> groupStyles[index] = styleMap.get(name));
+        List<String> styleClasses = Arrays.asList(SyntaxLexer.STYLE_CLASSES);
+        this.groupTypes = new int[groupStyles.length];
+        for (int g = 0; g < groupTypes.length; g++) {
+            if (groupStyles[g] != null) groupTypes[g] = styleClasses.indexOf(groupStyles[g]);
+        }
     }
-}
 
+    /**
+     * Report the styled tokens of {@code code} as {@link SyntaxLexer} token types, using the
+     * hand-written lexer where the language has one and the regex otherwise.
+     */
+    public void tokens(String code, SyntaxLexer.TokenSink sink) {
+        if (lexer != null) {
+            lexer.lex(code, 0, code.length(), SyntaxLexer.DEFAULT, sink);
+            return;
+        }
+        Matcher matcher = pattern.matcher(code);
+        while (matcher.find()) {
+            int type = typeOf(matcher);
+            if (type > 0) sink.token(matcher.start(), matcher.end(), type);
+        }
+    }
+
+    // The first styled group that took part in the match, looked up by index
+    private int typeOf(Matcher matcher) {
+        for (int g = 1; g < groupTypes.length; g++) {
+            if (groupTypes[g] > 0 && matcher.start(g) != -1) return groupTypes[g];
+        }
+        return 0;
+    }
+}
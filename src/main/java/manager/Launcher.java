@@ -0,0 +1,15 @@
+package manager;
+
+/**
+ * Entry point of the jar. A known command runs headless through {@link Cli}; anything else
+ * starts the desktop app. This class must not reference JavaFX types, so the command line path
+ * never loads the toolkit.
+ */
+public class Launcher {
+    public static void main(String[] args) {
+        if (args.length > 0 && Cli.COMMANDS.contains(args[0])) {
+            System.exit(Cli.run(args));
+        }
+        CodeSnippetManagerFX.main(args);
+    }
+}
@@ -0,0 +1,273 @@
+package manager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process histograms for the hot paths, and the Flight Recorder events that mirror them.
+ * Recording a value is a few atomic adds and a JFR event costs next to nothing when no
+ * recording wants it, so both stay on in normal use.
+ */
+public final class Metrics {
+    public static final Histogram SCAN = new Histogram("Project scan", Unit.NANOS);
+    public static final Histogram SCAN_RATE = new Histogram("Scan rate (files/s)", Unit.COUNT);
+    public static final Histogram LOAD = new Histogram("Library load", Unit.NANOS);
+    public static final Histogram SEARCH = new Histogram("Search", Unit.NANOS);
+    public static final Histogram HIGHLIGHT = new Histogram("Highlight", Unit.NANOS);
+    public static final Histogram SAVE = new Histogram("Snippet save", Unit.NANOS);
+    public static final Histogram GIST = new Histogram("Gist round trip", Unit.NANOS);
+    public static final Histogram DAEMON = new Histogram("Daemon request", Unit.NANOS);
+    public static final Histogram FIRST_FRAME = new Histogram("Launch to first frame", Unit.NANOS);
+    public static final Histogram EXPORT_PAGE = new Histogram("Site page render", Unit.NANOS);
+
+    public static final List<Histogram> ALL = List.of(FIRST_FRAME, SCAN, SCAN_RATE, LOAD, SEARCH, HIGHLIGHT, SAVE, GIST, DAEMON, EXPORT_PAGE);
+
+    private static final Duration RECORDING_MAX_AGE = Duration.ofMinutes(15);
+
+    private static Recording recording;
+
+    private Metrics() {
+    }
+
+    /**
+     * Start the session-long recording that {@link #dumpRecording} writes out. It uses the JDK's
+     * "default" settings, which are meant for always-on use, and keeps only the last minutes.
+     */
+    public static synchronized void startRecording() {
+        if (recording != null) return;
+        try {
+            Recording r = new Recording(Configuration.getConfiguration("default"));
+            r.setName("Code Manager session");
+            r.setToDisk(true);
+            r.setMaxAge(RECORDING_MAX_AGE);
+            r.start();
+            recording = r;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException ex) {
+            // a runtime without JFR still gets the in-process histograms
+            System.err.println("Flight Recorder unavailable: " + ex);
+        }
+    }
+
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Write everything the session recording holds so far to {@code file}; recording goes on.
+     */
+    public static synchronized void dumpRecording(Path file) throws IOException {
+        if (recording == null) throw new IOException("Flight Recorder is not running");
+        recording.dump(file);
+    }
+
+    public static synchronized void stopRecording() {
+        if (recording == null) return;
+        recording.close();
+        recording = null;
+    }
+
+    public enum Unit {
+        NANOS, COUNT;
+
+        public String format(long value) {
+            if (this == COUNT) return Long.toString(value);
+            if (value < 1_000_000) return String.format("%.1f µs", value / 1e3);
+            if (value < 1_000_000_000) return String.format("%.2f ms", value / 1e6);
+            return String.format("%.2f s", value / 1e9);
+        }
+    }
+
+    /**
+     * A lock-free log-linear histogram: values below 16 are exact, larger ones fall into one of
+     * eight buckets per power of two, so any percentile is within about 12% of the true value.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int LINEAR = 2 * SUB_BUCKETS;
+
+        public final String name;
+        public final Unit unit;
+        private final AtomicLongArray buckets = new AtomicLongArray(LINEAR + (64 - SUB_BITS - 1) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(String name, Unit unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(index(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Record the time since {@code startNanos} (a {@link System#nanoTime()} reading) and return it.
+         */
+        public long recordSince(long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            record(elapsed);
+            return elapsed;
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() / n;
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * The value below which {@code fraction} of the recorded values fall, reported as the
+         * upper edge of its bucket (capped at the largest value seen).
+         */
+        public long percentile(double fraction) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * n));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        public void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        private static int index(long v) {
+            if (v < LINEAR) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR + (exp - SUB_BITS - 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int i) {
+            if (i < LINEAR) return i;
+            int exp = (i - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+            int sub = (i - LINEAR) % SUB_BUCKETS;
+            long width = 1L << (exp - SUB_BITS);
+            long lower = (1L << exp) + sub * width;
+            return lower + width - 1 < 0 ? Long.MAX_VALUE : lower + width - 1;
+        }
+    }
+
+    // Flight Recorder events; durations come from begin()/commit() around the measured work
+
+    @Name("manager.Startup")
+    @Label("Startup Phase")
+    @Category("Code Manager")
+    static class StartupEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Since Launch")
+        @Timespan
+        long sinceLaunch;
+    }
+
+    @Name("manager.ProjectScan")
+    @Label("Project Scan")
+    @Category("Code Manager")
+    static class ScanEvent extends Event {
+        @Label("Folder")
+        String folder;
+        @Label("Files")
+        int files;
+        @Label("Functions")
+        int functions;
+    }
+
+    @Name("manager.SiteExport")
+    @Label("Site Export")
+    @Category("Code Manager")
+    static class ExportEvent extends Event {
+        @Label("Folder")
+        String folder;
+        @Label("Snippets")
+        int snippets;
+        @Label("Rendered")
+        int rendered;
+    }
+
+    @Name("manager.LibraryLoad")
+    @Label("Library Load")
+    @Category("Code Manager")
+    static class LoadEvent extends Event {
+        @Label("Snippets")
+        int snippets;
+    }
+
+    @Name("manager.Search")
+    @Label("Search")
+    @Category("Code Manager")
+    static class SearchEvent extends Event {
+        @Label("Query Length")
+        int queryLength;
+        @Label("Hits")
+        int hits;
+    }
+
+    @Name("manager.Highlight")
+    @Label("Highlight")
+    @Category("Code Manager")
+    static class HighlightEvent extends Event {
+        @Label("Lexer")
+        boolean lexer;
+        @Label("Characters")
+        int characters;
+    }
+
+    @Name("manager.SnippetSave")
+    @Label("Snippet Save")
+    @Category("Code Manager")
+    static class SaveEvent extends Event {
+        @Label("File")
+        String file;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("manager.GistRequest")
+    @Label("Gist Request")
+    @Category("Code Manager")
+    static class GistEvent extends Event {
+        @Label("Method")
+        String method;
+        @Label("URI")
+        String uri;
+        @Label("Status")
+        int status;
+    }
+}
@@ -0,0 +1,248 @@
+package manager;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.reactfx.Subscription;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Lazy, paragraph-granular highlighting for large previews and for the snippet editor.
+ * <p>
+ * Only the visible paragraphs plus {@link #MARGIN} on each side are styled, and more are styled
+ * as the user scrolls the virtualized {@link CodeArea}. The lexer state at the start of every
+ * paragraph that has been lexed is kept as a checkpoint, so highlighting further down resumes
+ * from the nearest checkpoint instead of re-lexing from the top of the document.
+ * <p>
+ * In an editable area, {@link #followEdits} re-lexes only the damaged paragraphs: it resumes
+ * from the checkpoint of the first touched paragraph and stops as soon as the end state of a
+ * paragraph matches the state that was recorded for its successor before the edit, because
+ * from there on the token stream is the same as before.
+ */
+public class ParagraphHighlighter {
+    private static final int MARGIN = 50;
+
+    private final CodeArea area;
+    private final LanguageSyntax syntax;
+    private CharSequence text;
+    private int[] lineStarts;
+    private int lineCount;
+    // lexer state at the start of each paragraph; valid for paragraphs [0, checkpointed]
+    private int[] states;
+    private int checkpointed;
+    private BitSet highlighted = new BitSet();
+    private final ChangeListener<Object> viewportListener = (obs, o, n) -> scheduleHighlight();
+    private boolean scheduled;
+    private boolean disposed;
+    private boolean applying;
+    private Subscription edits = Subscription.EMPTY;
+
+    /**
+     * @param text the text currently in {@code area}, with line terminators already normalized to '\n'
+     */
+    public ParagraphHighlighter(CodeArea area, LanguageSyntax syntax, String text) {
+        this.area = area;
+        this.syntax = syntax;
+        this.text = text;
+        this.lineStarts = new int[1024];
+        this.lineCount = 1;
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+            if (lineCount == lineStarts.length) lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+            lineStarts[lineCount++] = i + 1;
+        }
+        this.states = new int[lineStarts.length + 1];
+        area.estimatedScrollYProperty().addListener(viewportListener);
+        area.heightProperty().addListener(viewportListener);
+    }
+
+    public void dispose() {
+        disposed = true;
+        edits.unsubscribe();
+        area.estimatedScrollYProperty().removeListener(viewportListener);
+        area.heightProperty().removeListener(viewportListener);
+    }
+
+    // Coalesce the many scroll events of one pulse into a single pass after layout
+    private void scheduleHighlight() {
+        if (scheduled || disposed) return;
+        scheduled = true;
+        Platform.runLater(() -> {
+            scheduled = false;
+            if (!disposed) highlightVisible();
+        });
+    }
+
+    /**
+     * Style the visible paragraphs and the margin around them that are not styled yet.
+     */
+    public void highlightVisible() {
+        if (area.getVisibleParagraphs().isEmpty()) return;
+        int first = Math.max(0, area.firstVisibleParToAllParIndex() - MARGIN);
+        int last = Math.min(lineCount - 1, area.lastVisibleParToAllParIndex() + MARGIN);
+        int from = highlighted.nextClearBit(first);
+        while (from <= last) {
+            int next = highlighted.nextSetBit(from);
+            int to = next < 0 || next > last ? last : next - 1;
+            highlightRange(from, to);
+            from = highlighted.nextClearBit(to + 1);
+        }
+    }
+
+    /**
+     * Keep highlighting up to date while the user edits the area.
+     * <p>
+     * Follows rich changes rather than plain-text ones: replacing a range with the same text is
+     * not a plain-text change, but it still resets the styles of that range.
+     */
+    public void followEdits() {
+        edits = area.richChanges()
+                .filter(ch -> !applying)
+                .subscribe(ch -> textChanged(ch.getPosition(), ch.getRemoved().getText(), ch.getInserted().getText()));
+    }
+
+    // Bring bookkeeping and styles up to date after an edit was applied to the area
+    private void textChanged(int pos, String removed, String inserted) {
+        if (!(text instanceof StringBuilder)) text = new StringBuilder(text);
+        ((StringBuilder) text).replace(pos, pos + removed.length(), inserted);
+
+        int firstPar = paragraphAt(pos);
+        int removedLines = countLines(removed);
+        int insertedLines = countLines(inserted);
+        int delta = insertedLines - removedLines;
+        int tail = firstPar + 1 + removedLines; // first old paragraph after the damaged ones
+
+        // shift line starts, checkpoints and styled flags of everything after the damage, in place
+        int newCount = lineCount + delta;
+        if (newCount > lineStarts.length) lineStarts = Arrays.copyOf(lineStarts, Integer.highestOneBit(newCount) * 2);
+        if (states.length < lineStarts.length + 1) states = Arrays.copyOf(states, lineStarts.length + 1);
+        int net = inserted.length() - removed.length();
+        System.arraycopy(lineStarts, tail, lineStarts, tail + delta, lineCount - tail);
+        for (int p = tail + delta; p < newCount; p++) lineStarts[p] += net;
+        int n = firstPar + 1;
+        for (int i = inserted.indexOf('\n'); i >= 0; i = inserted.indexOf('\n', i + 1)) lineStarts[n++] = pos + i + 1;
+        if (checkpointed >= tail) System.arraycopy(states, tail, states, tail + delta, checkpointed - tail + 1);
+
+        BitSet newHighlighted = highlighted.get(0, firstPar);
+        for (int p = highlighted.nextSetBit(tail); p >= 0 && p < lineCount; p = highlighted.nextSetBit(p + 1)) {
+            newHighlighted.set(p + delta);
+        }
+        int oldCheckpointed = checkpointed;
+        lineCount = newCount;
+        highlighted = newHighlighted;
+        checkpointed = Math.min(checkpointed, firstPar);
+
+        if (firstPar > oldCheckpointed) return; // never lexed this far; the viewport pass will get to it
+        int lastDamaged = firstPar + insertedLines;
+        int resyncLimit = oldCheckpointed >= tail ? oldCheckpointed + delta : -1;
+        highlightFrom(firstPar, lastDamaged, resyncLimit);
+    }
+
+    /**
+     * Re-lex and restyle from {@code firstPar}: at least through {@code lastDamaged}, then on
+     * until the end state matches a pre-edit checkpoint (known up to {@code resyncLimit}).
+     */
+    private void highlightFrom(int firstPar, int lastDamaged, int resyncLimit) {
+        int rangeStart = lineStarts[firstPar];
+        StyleSpansBuilder<Collection<String>> spans = new StyleSpansBuilder<>();
+        int[] last = {rangeStart};
+        SyntaxLexer.TokenSink sink = styleSink(spans, last);
+        int p = firstPar;
+        while (true) {
+            int end = lexParagraph(p, states[p], sink);
+            highlighted.set(p);
+            boolean pastDamage = p >= lastDamaged;
+            if (pastDamage && p + 1 <= resyncLimit && states[p + 1] == end) {
+                // same state as before the edit: everything below is still styled correctly
+                checkpointed = Math.max(checkpointed, resyncLimit);
+                break;
+            }
+            states[p + 1] = end;
+            checkpointed = p + 1;
+            if (p + 1 >= lineCount) break;
+            if (pastDamage && !highlighted.get(p + 1)) {
+                // nothing styled further down any more; the viewport pass restyles from the new checkpoint
+                highlighted.clear(p + 1, lineCount);
+                break;
+            }
+            p++;
+        }
+        spans.add(Collections.emptyList(), paragraphEnd(p) - last[0]);
+        applyStyles(rangeStart, spans);
+    }
+
+    private void highlightRange(int firstPar, int lastPar) {
+        advanceCheckpoints(firstPar);
+        int rangeStart = lineStarts[firstPar];
+        StyleSpansBuilder<Collection<String>> spans = new StyleSpansBuilder<>();
+        int[] last = {rangeStart};
+        SyntaxLexer.TokenSink sink = styleSink(spans, last);
+        for (int p = firstPar; p <= lastPar; p++) {
+            recordState(p + 1, lexParagraph(p, states[p], sink));
+        }
+        int rangeEnd = paragraphEnd(lastPar);
+        spans.add(Collections.emptyList(), rangeEnd - last[0]);
+        applyStyles(rangeStart, spans);
+        highlighted.set(firstPar, lastPar + 1);
+    }
+
+    private void applyStyles(int from, StyleSpansBuilder<Collection<String>> spans) {
+        applying = true;
+        try {
+            area.setStyleSpans(from, spans.create());
+        } finally {
+            applying = false;
+        }
+    }
+
+    private static SyntaxLexer.TokenSink styleSink(StyleSpansBuilder<Collection<String>> spans, int[] last) {
+        return (start, end, type) -> {
+            spans.add(Collections.emptyList(), start - last[0]);
+            spans.add(SyntaxHighlighter.TOKEN_CLASSES.get(type), end - start);
+            last[0] = end;
+        };
+    }
+
+    // Lex forward, without styling, from the last checkpoint until paragraph `par` has a known start state
+    private void advanceCheckpoints(int par) {
+        SyntaxLexer.TokenSink ignore = (start, end, type) -> { };
+        while (checkpointed < par) {
+            recordState(checkpointed + 1, lexParagraph(checkpointed, states[checkpointed], ignore));
+        }
+    }
+
+    private void recordState(int par, int state) {
+        if (par > checkpointed + 1) return;
+        states[par] = state;
+        if (par > checkpointed) checkpointed = par;
+    }
+
+    private int lexParagraph(int par, int state, SyntaxLexer.TokenSink sink) {
+        int start = lineStarts[par];
+        int end = paragraphEnd(par);
+        if (syntax.lexer != null) return syntax.lexer.lex(text, start, end, state, sink);
+        // regex-only languages have no resumable state; highlight each paragraph on its own
+        syntax.tokens(text.subSequence(start, end).toString(), (s, e, type) -> sink.token(start + s, start + e, type));
+        return SyntaxLexer.DEFAULT;
+    }
+
+    // End offset of a paragraph including its line terminator
+    private int paragraphEnd(int par) {
+        return par + 1 < lineCount ? lineStarts[par + 1] : text.length();
+    }
+
+    private int paragraphAt(int offset) {
+        int i = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private static int countLines(String s) {
+        int n = 0;
+        for (int i = s.indexOf('\n'); i >= 0; i = s.indexOf('\n', i + 1)) n++;
+        return n;
+    }
+}
@@ -0,0 +1,269 @@
+package manager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Walks a project folder and extracts the functions of every source file in a known language.
+ * <p>
+ * Source archives ({@code .jar}, {@code .zip}, e.g. {@code -sources.jar} or the JDK's
+ * {@code src.zip}) are read in place through the zip file system, several at once. What an
+ * archive yields is cached under its content hash, so scanning an unchanged archive again only
+ * costs hashing it. Functions from an archive get paths of the form {@code archive!/entry}.
+ */
+public class ProjectScanner {
+    public static final Path DEFAULT_ARCHIVE_CACHE = Path.of("index", "archives");
+
+    private static final int CACHE_MAGIC = 0x434d4152; // "CMAR"
+    // bump when the parser changes what it extracts, so stale caches are ignored
+    private static final int CACHE_VERSION = 1;
+    private static final String ENTRY_SEPARATOR = "!";
+
+    public static List<ProjectFunction> indexProjectFolder(File folder) {
+        return indexProjectFolder(folder, DEFAULT_ARCHIVE_CACHE);
+    }
+
+    /**
+     * Scan a folder, or a single source archive, caching archive results in {@code archiveCache}.
+     */
+    public static List<ProjectFunction> indexProjectFolder(File folder, Path archiveCache) {
+        return indexProjectFolder(folder, archiveCache, () -> { });
+    }
+
+    /**
+     * As above, calling {@code beforeFile} before each source file is read, on whichever thread
+     * reads it; background scans pass a throttle here.
+     */
+    public static List<ProjectFunction> indexProjectFolder(File folder, Path archiveCache, Runnable beforeFile) {
+        List<ProjectFunction> functions = new ArrayList<>();
+        if (folder == null || !(folder.isDirectory() || folder.isFile() && isArchive(folder.getName()))) {
+            System.out.println("Invalid folder: " + folder);
+            return functions;
+        }
+
+        long start = System.nanoTime();
+        Metrics.ScanEvent event = new Metrics.ScanEvent();
+        event.begin();
+        int[] files = {0};
+        List<Path> archives = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(folder.toPath())) {
+            walk.filter(Files::isRegularFile)
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        if (isArchive(name)) {
+                            archives.add(file);
+                            return;
+                        }
+                        String lang = getLanguage(name);
+                        if (lang == null) {
+                            System.out.println("Skipping file (unknown language): " + file);
+                            return;
+                        }
+
+                        System.out.println("Scanning file: " + file + " (language: " + lang + ")");
+                        beforeFile.run();
+                        try {
+                            String content = Files.readString(file);
+                            files[0]++;
+                            List<ProjectFunction> fileFunctions = FunctionParser.parseFunctions(content, file, folder.getName());
+                            System.out.println("Found " + fileFunctions.size() + " functions in " + file);
+                            functions.addAll(fileFunctions);
+                        } catch (IOException ex) {
+                            System.out.println("Error reading file: " + file);
+                            ex.printStackTrace();
+                        }
+                    });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        files[0] += scanArchives(archives, folder.getName(), archiveCache, beforeFile, functions);
+
+        event.folder = folder.getPath();
+        event.files = files[0];
+        event.functions = functions.size();
+        event.commit();
+        long elapsed = Metrics.SCAN.recordSince(start);
+        if (files[0] > 0) Metrics.SCAN_RATE.record(files[0] * 1_000_000_000L / Math.max(1, elapsed));
+
+        System.out.println("Total functions indexed: " + functions.size() + " from " + files[0] + " files in " + elapsed / 1_000_000 + " ms");
+        return functions;
+    }
+
+    static String getLanguage(String fileName) {
+        if (fileName.endsWith(".java")) return "java";
+        if (fileName.endsWith(".py")) return "python";
+        if (fileName.endsWith(".js")) return "javascript";
+        return null;
+    }
+
+    static boolean isArchive(String fileName) {
+        return fileName.endsWith(".jar") || fileName.endsWith(".zip");
+    }
+
+    /**
+     * Scan archives in parallel, one per worker, adding their functions in archive order. Returns
+     * the number of source entries read (cached archives count what they held when scanned).
+     */
+    private static int scanArchives(List<Path> archives, String projectName, Path archiveCache, Runnable beforeFile,
+                                    List<ProjectFunction> into) {
+        if (archives.isEmpty()) return 0;
+        int threads = Math.min(archives.size(), Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "archive-scanner-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<ArchiveResult>> pending = new ArrayList<>();
+            for (Path archive : archives) pending.add(pool.submit(() -> scanArchive(archive, projectName, archiveCache, beforeFile)));
+            int entries = 0;
+            for (int i = 0; i < archives.size(); i++) {
+                try {
+                    ArchiveResult r = pending.get(i).get();
+                    into.addAll(r.functions);
+                    entries += r.entries;
+                } catch (ExecutionException ex) {
+                    System.out.println("Error reading archive: " + archives.get(i));
+                    ex.getCause().printStackTrace();
+                }
+            }
+            return entries;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static final class ArchiveResult {
+        final int entries;
+        final List<ProjectFunction> functions;
+
+        ArchiveResult(int entries, List<ProjectFunction> functions) {
+            this.entries = entries;
+            this.functions = functions;
+        }
+    }
+
+    private static ArchiveResult scanArchive(Path archive, String projectName, Path archiveCache, Runnable beforeFile) throws IOException {
+        long start = System.nanoTime();
+        String hash = hash(archive);
+        Path cacheFile = archiveCache.resolve(hash + ".bin");
+        ArchiveResult cached = readCache(cacheFile, archive, projectName);
+        if (cached != null) {
+            System.out.println("Archive unchanged, " + cached.functions.size() + " functions from cache: " + archive);
+            return cached;
+        }
+
+        List<ProjectFunction> functions = new ArrayList<>();
+        int entries = 0;
+        try (FileSystem zip = FileSystems.newFileSystem(archive)) {
+            for (Path root : zip.getRootDirectories()) {
+                try (Stream<Path> walk = Files.walk(root)) {
+                    for (Path entry : (Iterable<Path>) walk.filter(Files::isRegularFile)::iterator) {
+                        if (getLanguage(entry.getFileName().toString()) == null) continue;
+                        beforeFile.run();
+                        String content;
+                        try {
+                            content = Files.readString(entry);
+                        } catch (IOException ex) {
+                            System.out.println("Error reading " + entry + " in " + archive + ": " + ex);
+                            continue;
+                        }
+                        entries++;
+                        functions.addAll(FunctionParser.parseFunctions(content, entryPath(archive, entry.toString()), projectName));
+                    }
+                }
+            }
+        }
+        writeCache(cacheFile, archive, entries, functions);
+        System.out.println("Found " + functions.size() + " functions in " + entries + " entries of " + archive
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new ArchiveResult(entries, functions);
+    }
+
+    private static Path entryPath(Path archive, String entry) {
+        return Path.of(archive + ENTRY_SEPARATOR + entry);
+    }
+
+    private static String hash(Path archive) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(archive)) {
+            for (int n; (n = in.read(buf)) > 0; ) digest.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Entry names are stored relative to the archive, so a moved or copied archive still hits
+    private static ArchiveResult readCache(Path cacheFile, Path archive, String projectName) {
+        if (!Files.exists(cacheFile)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile), 1 << 16))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) return null;
+            int entries = in.readInt();
+            int count = in.readInt();
+            List<ProjectFunction> functions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String entry = in.readUTF();
+                String fileName = in.readUTF();
+                String language = in.readUTF();
+                String name = in.readUTF();
+                byte[] code = new byte[in.readInt()];
+                in.readFully(code);
+                functions.add(new ProjectFunction(projectName, fileName, language, name,
+                        new String(code, StandardCharsets.UTF_8), entryPath(archive, entry)));
+            }
+            return new ArchiveResult(entries, functions);
+        } catch (IOException ex) {
+            System.out.println("Ignoring unreadable archive cache " + cacheFile + ": " + ex);
+            return null;
+        }
+    }
+
+    private static void writeCache(Path cacheFile, Path archive, int entries, List<ProjectFunction> functions) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            // archives are scanned in parallel; a unique temp name keeps two scans of the same jar apart
+            Path tmp = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(entries);
+                out.writeInt(functions.size());
+                int prefix = entryPath(archive, "").toString().length();
+                for (ProjectFunction f : functions) {
+                    out.writeUTF(f.path.toString().substring(prefix));
+                    out.writeUTF(f.fileName);
+                    out.writeUTF(f.language);
+                    out.writeUTF(f.functionName);
+                    byte[] code = f.code.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(code.length);
+                    out.write(code);
+                }
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            System.out.println("Could not cache archive results in " + cacheFile + ": " + ex);
+        }
+    }
+}
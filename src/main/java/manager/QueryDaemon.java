@@ -0,0 +1,270 @@
+package manager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the library and function index in memory and answers editor queries over a Unix domain
+ * socket, so a lookup costs a round trip instead of a JVM start. Each client gets its own
+ * virtual thread.
+ * <p>
+ * Frames in both directions are a 4-byte big-endian length, then one opcode byte, then the
+ * payload ({@code length - 1} bytes). Requests:
+ * <ul>
+ *   <li>{@code PING} (0): empty payload.</li>
+ *   <li>{@code SEARCH} (1): 2-byte hit limit, then the UTF-8 query. Returns a JSON array of hits
+ *       with their ids, without code.</li>
+ *   <li>{@code FETCH} (2): UTF-8 id from a search hit. Returns the JSON snippet with code.</li>
+ *   <li>{@code INSERT} (3): JSON snippet as written by {@code export}. Saves it to the store and
+ *       returns {@code {"id": ...}}.</li>
+ *   <li>{@code STATS} (4): empty payload. Returns request latency percentiles.</li>
+ *   <li>{@code RELOAD} (5): empty payload. Re-reads the store and index, e.g. after a scan.</li>
+ * </ul>
+ * A reply carries the request opcode with the high bit set ({@code 0x80 | op}) and a UTF-8 JSON
+ * payload, or {@code ERROR} (0xFF) and a UTF-8 message.
+ */
+public class QueryDaemon {
+    public static final byte PING = 0;
+    public static final byte SEARCH = 1;
+    public static final byte FETCH = 2;
+    public static final byte INSERT = 3;
+    public static final byte STATS = 4;
+    public static final byte RELOAD = 5;
+    public static final byte ERROR = (byte) 0xFF;
+
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+    // function hits are only identified by the index; keep recent ones so FETCH can find them
+    private static final int RECENT_FUNCTIONS = 4096;
+    private static final String FUNCTION_ID = "f:";
+
+    private final Path socket;
+    private final SnippetStore store;
+    private final Path indexDir;
+    private final Object writeLock = new Object();
+    private final Map<String, Snippet> recentFunctions = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snippet> eldest) {
+            return size() > RECENT_FUNCTIONS;
+        }
+    };
+    private final AtomicInteger clientCount = new AtomicInteger();
+
+    // swapped whole on RELOAD; searches in flight finish against the previous pair
+    private volatile Loaded state;
+    private ServerSocketChannel server;
+
+    private static final class Loaded {
+        final List<Snippet> library;
+        final Map<String, Snippet> byId = new ConcurrentHashMap<>();
+        final SearchIndex index;
+
+        Loaded(List<Snippet> snippets, Path indexDir) {
+            library = new CopyOnWriteArrayList<>(snippets);
+            for (Snippet s : snippets) byId.put(s.sourceFile.getName(), s);
+            index = new SearchIndex(indexDir, library);
+            index.load();
+        }
+    }
+
+    public QueryDaemon(Path socket, File snippetsDir, Path indexDir) {
+        this.socket = socket;
+        this.store = new SnippetStore(snippetsDir);
+        this.indexDir = indexDir;
+    }
+
+    /**
+     * Load everything, bind the socket and serve until the process exits. Refuses to start if
+     * another daemon already answers on the socket; a stale socket file is replaced.
+     */
+    public void serve() throws IOException {
+        long start = System.nanoTime();
+        state = new Loaded(store.loadAll(), indexDir);
+        bind();
+        System.out.println("Serving " + state.library.size() + " snippets and " + state.index.functionCount()
+                + " functions on " + socket.toAbsolutePath() + " (ready in " + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "daemon-shutdown"));
+        while (server.isOpen()) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (IOException ex) {
+                if (!server.isOpen()) break;
+                throw ex;
+            }
+            Thread.ofVirtual().name("daemon-client-" + clientCount.incrementAndGet()).start(() -> handle(client));
+        }
+    }
+
+    private void bind() throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        if (Files.exists(socket)) {
+            boolean live;
+            try {
+                SocketChannel.open(address).close();
+                live = true;
+            } catch (IOException refused) {
+                live = false;
+            }
+            if (live) throw new IOException("A daemon is already listening on " + socket);
+            Files.delete(socket);
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(address);
+    }
+
+    public void close() {
+        try {
+            if (server != null) server.close();
+            Files.deleteIfExists(socket);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try (client) {
+            while (true) {
+                header.clear();
+                if (!readFully(client, header, true)) return;
+                int length = header.getInt(0);
+                if (length < 1 || length > MAX_FRAME) throw new IOException("Bad frame length " + length);
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                readFully(client, frame, false);
+                frame.flip();
+                byte op = frame.get();
+                long start = System.nanoTime();
+                byte replyOp;
+                byte[] reply;
+                try {
+                    reply = dispatch(op, frame).getBytes(StandardCharsets.UTF_8);
+                    replyOp = (byte) (0x80 | op);
+                } catch (BufferUnderflowException ex) {
+                    reply = ("Truncated payload for opcode " + op).getBytes(StandardCharsets.UTF_8);
+                    replyOp = ERROR;
+                } catch (IllegalArgumentException | JSONException | IOException ex) {
+                    reply = String.valueOf(ex.getMessage()).getBytes(StandardCharsets.UTF_8);
+                    replyOp = ERROR;
+                }
+                ByteBuffer out = ByteBuffer.allocate(5 + reply.length);
+                out.putInt(1 + reply.length).put(replyOp).put(reply).flip();
+                while (out.hasRemaining()) client.write(out);
+                Metrics.DAEMON.recordSince(start);
+            }
+        } catch (IOException ex) {
+            // the client hung up mid-frame or sent garbage; nothing to answer
+            System.out.println("Daemon client dropped: " + ex.getMessage());
+        }
+    }
+
+    private static boolean readFully(SocketChannel ch, ByteBuffer buf, boolean eofAllowed) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) {
+                if (eofAllowed && buf.position() == 0) return false;
+                throw new EOFException("Connection closed mid-frame");
+            }
+        }
+        return true;
+    }
+
+    private String dispatch(byte op, ByteBuffer payload) throws IOException {
+        switch (op) {
+            case PING:
+                return "{}";
+            case SEARCH:
+                int limit = Short.toUnsignedInt(payload.getShort());
+                return search(utf8(payload), limit).toString();
+            case FETCH:
+                return fetch(utf8(payload)).toString();
+            case INSERT:
+                return insert(new JSONObject(utf8(payload))).toString();
+            case STATS:
+                return stats().toString();
+            case RELOAD:
+                state = new Loaded(store.loadAll(), indexDir);
+                return new JSONObject().put("snippets", state.library.size()).put("functions", state.index.functionCount()).toString();
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + op);
+        }
+    }
+
+    private static String utf8(ByteBuffer buf) {
+        return new String(buf.array(), buf.position(), buf.remaining(), StandardCharsets.UTF_8);
+    }
+
+    private JSONArray search(String query, int limit) {
+        Loaded s = state;
+        JSONArray hits = new JSONArray();
+        for (Snippet hit : s.index.search(query, limit)) {
+            if (hits.length() >= limit) break;
+            JSONObject o = new JSONObject().put("title", hit.title).put("language", hit.language());
+            if (hit.origin != null) {
+                String id = FUNCTION_ID + hit.origin.path + "#" + hit.origin.functionName;
+                synchronized (recentFunctions) {
+                    recentFunctions.put(id, hit);
+                }
+                o.put("id", id).put("kind", "function").put("file", hit.origin.path.toString());
+            } else {
+                o.put("id", hit.sourceFile.getName()).put("kind", "snippet")
+                        .put("tags", new JSONArray(hit.tags())).put("description", hit.description);
+            }
+            hits.put(o);
+        }
+        return hits;
+    }
+
+    private JSONObject fetch(String id) {
+        Snippet s;
+        if (id.startsWith(FUNCTION_ID)) {
+            synchronized (recentFunctions) {
+                s = recentFunctions.get(id);
+            }
+        } else {
+            s = state.byId.get(id);
+        }
+        if (s == null) throw new IllegalArgumentException("No snippet with id " + id);
+        return s.toJson().put("id", id);
+    }
+
+    private JSONObject insert(JSONObject json) throws IOException {
+        Snippet s = Snippet.fromJson(json);
+        // SnippetStore picks file names by probing the directory; one writer at a time
+        synchronized (writeLock) {
+            store.save(s);
+            Loaded current = state;
+            current.library.add(s);
+            current.byId.put(s.sourceFile.getName(), s);
+        }
+        return new JSONObject().put("id", s.sourceFile.getName());
+    }
+
+    private static JSONObject stats() {
+        JSONObject o = new JSONObject();
+        for (Metrics.Histogram h : List.of(Metrics.DAEMON, Metrics.SEARCH)) {
+            o.put(h.name, new JSONObject()
+                    .put("count", h.count())
+                    .put("p50Micros", h.percentile(0.50) / 1000)
+                    .put("p99Micros", h.percentile(0.99) / 1000)
+                    .put("maxMicros", h.max() / 1000));
+        }
+        return o;
+    }
+}
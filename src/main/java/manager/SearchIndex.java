@@ -0,0 +1,507 @@
+package manager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * One search index over library snippets and the functions scanned from registered project roots.
+ * <p>
+ * Function entries are persisted under {@code index/} so they survive restarts. Metadata lives in
+ * {@code functions.idx}, code bodies are appended to a data file and only read back for the hits
+ * that are actually returned. Substring queries over function names, files and projects are
+ * answered from a trigram index, so lookups only touch candidate entries.
+ * <p>
+ * Each root is a separate segment with its own columns and trigrams, and segments never change
+ * once searches can see them. Rescanning a root builds a new segment for that root alone and
+ * swaps it in; the other segments are shared. Compaction writes the live bodies to a data file
+ * with the next generation number, so the idx and the data it points into are always replaced
+ * together: the new idx is renamed into place before the old data file is deleted.
+ */
+public class SearchIndex {
+    private static final int MAGIC = 0x434d4958; // "CMIX"
+    // 1: one table with root ids, bodies in functions.dat
+    private static final int VERSION = 2;
+
+    private final Path dir;
+    private final Path metaFile;
+    private final List<Snippet> library;
+
+    // serializes loading and every change to the index files; searches never take it
+    private final Object writeLock = new Object();
+    private boolean loaded;
+    private volatile Table table;
+
+    public SearchIndex(Path dir, List<Snippet> library) {
+        this.dir = dir;
+        this.metaFile = dir.resolve("functions.idx");
+        this.library = library;
+        this.table = new Table(List.of(), 1, dataFile(1), 0);
+    }
+
+    // generation 0 is the file indexes before version 2 appended to
+    private Path dataFile(int generation) {
+        return dir.resolve(generation == 0 ? "functions.dat" : "functions-" + generation + ".dat");
+    }
+
+    /**
+     * Load persisted function entries. Safe to call off the FX thread; searches keep answering
+     * from the previous (empty) table until loading has finished.
+     */
+    public void load() {
+        synchronized (writeLock) {
+            if (loaded) return;
+            loaded = true;
+            Table t = read();
+            if (t == null) return;
+            table = t;
+            deleteStaleData(t.data);
+            System.out.println("Search index loaded: " + t.liveCount() + " functions from " + t.segments.size() + " roots");
+        }
+    }
+
+    private Table read() {
+        if (!Files.exists(metaFile)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(metaFile), 1 << 16))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version == 1) return readVersion1(in);
+            if (version != VERSION) {
+                System.out.println("Ignoring incompatible search index: " + metaFile);
+                return null;
+            }
+            int generation = in.readInt();
+            Path data = dataFile(generation);
+            long dataLength = in.readLong();
+            if (!Files.exists(data) || Files.size(data) < dataLength) {
+                System.out.println("Ignoring search index whose data file is missing or short: " + data);
+                return null;
+            }
+            int rootCount = in.readInt();
+            List<Segment> segments = new ArrayList<>(rootCount);
+            for (int r = 0; r < rootCount; r++) {
+                Segment seg = new Segment(in.readUTF());
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    seg.add(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(), in.readInt());
+                }
+                segments.add(seg);
+            }
+            return new Table(segments, generation, data, dataLength);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Indexes written before segments: one root list, then entries tagged with a root id
+    private Table readVersion1(DataInputStream in) throws IOException {
+        Path data = dataFile(0);
+        int rootCount = in.readInt();
+        List<Segment> segments = new ArrayList<>(rootCount);
+        for (int r = 0; r < rootCount; r++) segments.add(new Segment(in.readUTF()));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Segment seg = segments.get(in.readInt());
+            seg.add(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(), in.readInt());
+        }
+        return new Table(segments, 0, data, Files.exists(data) ? Files.size(data) : 0);
+    }
+
+    // A crash after an idx swap can leave the previous generation's data file behind
+    private void deleteStaleData(Path live) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "functions*.dat")) {
+            for (Path f : files) {
+                if (!f.equals(live)) Files.deleteIfExists(f);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replace all functions of a project root with a fresh scan result and persist the index.
+     */
+    public void putRoot(Path root, List<ProjectFunction> functions) throws IOException {
+        synchronized (writeLock) {
+            // never rewrite the files from a table that is missing the persisted entries
+            load();
+            Table current = table;
+            Segment seg = new Segment(key(root));
+
+            // appending leaves every body the current table points at where it is
+            Files.createDirectories(dir);
+            long dataLength;
+            try (FileChannel ch = FileChannel.open(current.data, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long offset = ch.size();
+                for (ProjectFunction f : functions) {
+                    byte[] code = f.code.getBytes(StandardCharsets.UTF_8);
+                    ByteBuffer buf = ByteBuffer.wrap(code);
+                    while (buf.hasRemaining()) ch.write(buf);
+                    seg.add(f.functionName, f.fileName, f.language, f.path.toString(), offset, code.length);
+                    offset += code.length;
+                }
+                // the idx about to point at these bodies must not outlive them in a crash
+                ch.force(false);
+                dataLength = offset;
+            }
+
+            List<Segment> segments = new ArrayList<>(current.segments);
+            int at = current.indexOf(seg.root);
+            if (at < 0) segments.add(seg);
+            else segments.set(at, seg);
+            publish(new Table(segments, current.generation, current.data, dataLength));
+        }
+    }
+
+    /**
+     * Drop a project root and all of its functions, and persist the index.
+     */
+    public void removeRoot(Path root) throws IOException {
+        synchronized (writeLock) {
+            load();
+            Table current = table;
+            int at = current.indexOf(key(root));
+            if (at < 0) return;
+            List<Segment> segments = new ArrayList<>(current.segments);
+            segments.remove(at);
+            publish(new Table(segments, current.generation, current.data, current.dataLength));
+        }
+    }
+
+    private static String key(Path root) {
+        return root.toAbsolutePath().normalize().toString();
+    }
+
+    // Install and persist a new table, compacting first once most of the data file is dead
+    private void publish(Table next) throws IOException {
+        if (next.dataLength - next.liveBytes() > next.liveBytes()) next = compact(next);
+        Table previous;
+        synchronized (this) {
+            previous = table;
+            table = next;
+        }
+        save(next);
+        // searches that could still be reading the old file finished before the swap above
+        if (!previous.data.equals(next.data)) Files.deleteIfExists(previous.data);
+    }
+
+    public List<String> roots() {
+        List<String> roots = new ArrayList<>();
+        for (Segment seg : table.segments) roots.add(seg.root);
+        return roots;
+    }
+
+    public int functionCount() {
+        return table.liveCount();
+    }
+
+    /**
+     * Library snippets matching the query, followed by up to {@code functionLimit} scanned
+     * functions. Function hits come back as unsaved snippets with {@link Snippet#origin} set.
+     */
+    public List<Snippet> search(String query, int functionLimit) {
+        long start = System.nanoTime();
+        Metrics.SearchEvent event = new Metrics.SearchEvent();
+        event.begin();
+        Query q = Query.parse(query);
+        String ql = q.text;
+        List<Snippet> result = new ArrayList<>();
+        for (Snippet s : library) {
+            if (q.accepts(s) && (ql.isEmpty() || s.matches(ql))) {
+                result.add(s);
+            }
+        }
+        if (!ql.isEmpty()) {
+            List<ProjectFunction> functions;
+            // a compacted table is installed under this monitor before its old data file goes
+            synchronized (this) {
+                functions = table.search(ql, functionLimit);
+            }
+            for (ProjectFunction f : functions) {
+                Snippet hit = Snippet.fromFunction(f);
+                if (q.accepts(hit)) result.add(hit);
+            }
+        }
+        event.queryLength = ql.length();
+        event.hits = result.size();
+        event.commit();
+        Metrics.SEARCH.recordSince(start);
+        return result;
+    }
+
+    /**
+     * A search string split into free text and {@code tag:name} / {@code lang:name} filters. The
+     * filters are resolved to folded {@link Vocabulary} ids once, so checking a snippet against
+     * them compares ints; a name nothing was ever tagged with matches nothing.
+     */
+    static final class Query {
+        final String text;
+        private final int language;
+        private final int[] tags;
+
+        private Query(String text, int language, int[] tags) {
+            this.text = text;
+            this.language = language;
+            this.tags = tags;
+        }
+
+        static Query parse(String query) {
+            StringBuilder text = new StringBuilder();
+            int language = Vocabulary.EMPTY;
+            int[] tags = new int[0];
+            if (query != null) {
+                for (String word : query.trim().toLowerCase().split("\\s+")) {
+                    if (word.startsWith("tag:") && word.length() > 4) {
+                        tags = Arrays.copyOf(tags, tags.length + 1);
+                        tags[tags.length - 1] = Vocabulary.find(word.substring(4));
+                    } else if (word.startsWith("lang:") && word.length() > 5) {
+                        language = Vocabulary.find(word.substring(5));
+                    } else if (!word.isEmpty()) {
+                        if (text.length() > 0) text.append(' ');
+                        text.append(word);
+                    }
+                }
+            }
+            return new Query(text.toString(), language, tags);
+        }
+
+        boolean accepts(Snippet s) {
+            if (language != Vocabulary.EMPTY && Vocabulary.folded(s.languageId) != language) return false;
+            for (int tag : tags) {
+                if (tag < 0 || !s.hasTagIgnoreCase(tag)) return false;
+            }
+            return true;
+        }
+    }
+
+    private void save(Table t) throws IOException {
+        Path tmp = metaFile.resolveSibling(metaFile.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(t.generation);
+            out.writeLong(t.dataLength);
+            out.writeInt(t.segments.size());
+            for (Segment seg : t.segments) {
+                out.writeUTF(seg.root);
+                out.writeInt(seg.size);
+                for (int i = 0; i < seg.size; i++) {
+                    out.writeUTF(seg.names[i]);
+                    out.writeUTF(seg.files[i]);
+                    out.writeUTF(seg.languages[i]);
+                    out.writeUTF(seg.paths[i]);
+                    out.writeLong(seg.offsets[i]);
+                    out.writeInt(seg.lengths[i]);
+                }
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copy the live bodies of {@code from} into the data file of the next generation. The old
+     * file stays until an idx pointing at the new one has replaced the old idx.
+     */
+    private Table compact(Table from) throws IOException {
+        int generation = from.generation + 1;
+        Path data = dataFile(generation);
+        List<Segment> segments = new ArrayList<>(from.segments.size());
+        long offset = 0;
+        try (FileChannel src = FileChannel.open(from.data, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Segment seg : from.segments) {
+                long[] offsets = new long[seg.size];
+                for (int i = 0; i < seg.size; i++) {
+                    long copied = 0;
+                    while (copied < seg.lengths[i]) {
+                        copied += src.transferTo(seg.offsets[i] + copied, seg.lengths[i] - copied, dst);
+                    }
+                    offsets[i] = offset;
+                    offset += seg.lengths[i];
+                }
+                segments.add(seg.withOffsets(offsets));
+            }
+            dst.force(false);
+        }
+        return new Table(segments, generation, data, offset);
+    }
+
+    /**
+     * The segments searches currently see, and the data file their offsets point into.
+     */
+    private static final class Table {
+        final List<Segment> segments;
+        final int generation;
+        final Path data;
+        // bytes of data the idx vouches for; anything after it is left over from a crash
+        final long dataLength;
+
+        Table(List<Segment> segments, int generation, Path data, long dataLength) {
+            this.segments = List.copyOf(segments);
+            this.generation = generation;
+            this.data = data;
+            this.dataLength = dataLength;
+        }
+
+        int indexOf(String root) {
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.get(i).root.equals(root)) return i;
+            }
+            return -1;
+        }
+
+        int liveCount() {
+            int n = 0;
+            for (Segment seg : segments) n += seg.size;
+            return n;
+        }
+
+        long liveBytes() {
+            long n = 0;
+            for (Segment seg : segments) n += seg.bytes;
+            return n;
+        }
+
+        List<ProjectFunction> search(String ql, int limit) {
+            List<Segment> hitSegments = new ArrayList<>();
+            List<Integer> hits = new ArrayList<>();
+            for (Segment seg : segments) {
+                int before = hits.size();
+                seg.search(ql, limit, hits);
+                for (int i = before; i < hits.size(); i++) hitSegments.add(seg);
+                if (hits.size() >= limit) break;
+            }
+            if (hits.isEmpty()) return List.of();
+
+            List<ProjectFunction> result = new ArrayList<>(hits.size());
+            try (FileChannel ch = FileChannel.open(data, StandardOpenOption.READ)) {
+                for (int h = 0; h < hits.size(); h++) {
+                    result.add(hitSegments.get(h).read(hits.get(h), ch));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The functions of one root stored column-wise, plus a trigram index over their lowercase
+     * search keys. Filled in while it is built, never changed after.
+     */
+    private static final class Segment {
+        final String root;
+        final String projectName;
+        int size;
+        long bytes;
+        String[] names = new String[16];
+        String[] files = new String[16];
+        String[] languages = new String[16];
+        String[] paths = new String[16];
+        String[] keys = new String[16];
+        long[] offsets = new long[16];
+        int[] lengths = new int[16];
+        Map<Integer, Postings> trigrams = new HashMap<>();
+
+        Segment(String root) {
+            this.root = root;
+            Path name = Paths.get(root).getFileName();
+            this.projectName = name == null ? root : name.toString();
+        }
+
+        void add(String name, String file, String language, String path, long offset, int length) {
+            if (size == names.length) grow();
+            int id = size++;
+            names[id] = name;
+            files[id] = file;
+            languages[id] = language;
+            paths[id] = path;
+            offsets[id] = offset;
+            lengths[id] = length;
+            bytes += length;
+            String key = (name + " " + file + " " + projectName).toLowerCase();
+            keys[id] = key;
+            for (int i = 0; i + 3 <= key.length(); i++) {
+                trigrams.computeIfAbsent(trigram(key, i), k -> new Postings()).add(id);
+            }
+        }
+
+        // The same entries with their bodies at new offsets; everything else is shared
+        Segment withOffsets(long[] newOffsets) {
+            Segment s = new Segment(root);
+            s.size = size;
+            s.bytes = bytes;
+            s.names = names;
+            s.files = files;
+            s.languages = languages;
+            s.paths = paths;
+            s.keys = keys;
+            s.offsets = newOffsets;
+            s.lengths = lengths;
+            s.trigrams = trigrams;
+            return s;
+        }
+
+        void search(String ql, int limit, List<Integer> hits) {
+            if (ql.length() < 3) {
+                for (int i = 0; i < size && hits.size() < limit; i++) {
+                    if (keys[i].contains(ql)) hits.add(i);
+                }
+                return;
+            }
+            // walk the rarest trigram's postings and verify the full substring on each candidate
+            Postings rarest = null;
+            for (int i = 0; i + 3 <= ql.length(); i++) {
+                Postings p = trigrams.get(trigram(ql, i));
+                if (p == null) return;
+                if (rarest == null || p.size < rarest.size) rarest = p;
+            }
+            for (int j = 0; j < rarest.size && hits.size() < limit; j++) {
+                int id = rarest.ids[j];
+                if (keys[id].contains(ql)) hits.add(id);
+            }
+        }
+
+        ProjectFunction read(int id, FileChannel ch) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(lengths[id]);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, offsets[id] + buf.position()) < 0) break;
+            }
+            String code = new String(buf.array(), StandardCharsets.UTF_8);
+            return new ProjectFunction(projectName, files[id], languages[id], names[id], code, Paths.get(paths[id]));
+        }
+
+        private void grow() {
+            int n = names.length * 2;
+            names = Arrays.copyOf(names, n);
+            files = Arrays.copyOf(files, n);
+            languages = Arrays.copyOf(languages, n);
+            paths = Arrays.copyOf(paths, n);
+            keys = Arrays.copyOf(keys, n);
+            offsets = Arrays.copyOf(offsets, n);
+            lengths = Arrays.copyOf(lengths, n);
+        }
+
+        private static int trigram(String s, int i) {
+            return (s.charAt(i) << 20) ^ (s.charAt(i + 1) << 10) ^ s.charAt(i + 2);
+        }
+    }
+
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            // ids arrive in increasing order; skip repeats of the same trigram within one key
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+}
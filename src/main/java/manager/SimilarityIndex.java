@@ -0,0 +1,263 @@
+package manager;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * "Find similar" over the snippet library, fully offline.
+ * <p>
+ * Each snippet becomes a sparse vector of hashed features: code tokens namespaced by their
+ * lexical class from {@link LanguageSyntax} (keyword, operator, identifier, ...), words from
+ * comments, and shingles of adjacent code tokens. Candidates come from random-projection LSH
+ * tables (with single-bit multi-probe), and only those candidates are ranked by TF-IDF cosine,
+ * so a lookup never scans the whole library.
+ * <p>
+ * Safe to use from any thread. Snippets are vectorized before the lock is taken, so a lookup
+ * only ever waits for table updates, never for a bulk load.
+ */
+public class SimilarityIndex {
+    private static final int TABLES = 8;
+    private static final int BITS = 12;
+    private static final int MAX_CANDIDATES = 2000;
+    private static final int BATCH = 256;
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final Function<String, LanguageSyntax> syntaxLookup;
+    private final Map<Snippet, Vector> vectors = new HashMap<>();
+    private final Map<Integer, Integer> documentFrequency = new HashMap<>();
+    private final List<Map<Integer, List<Snippet>>> tables = new ArrayList<>(TABLES);
+
+    public SimilarityIndex(Function<String, LanguageSyntax> syntaxLookup) {
+        this.syntaxLookup = syntaxLookup;
+        for (int t = 0; t < TABLES; t++) tables.add(new HashMap<>());
+    }
+
+    public void putAll(Collection<Snippet> snippets) {
+        List<Snippet> batch = new ArrayList<>(BATCH);
+        List<Vector> built = new ArrayList<>(BATCH);
+        for (Snippet s : snippets) {
+            batch.add(s);
+            built.add(vectorize(s));
+            if (batch.size() == BATCH) insertAll(batch, built);
+        }
+        insertAll(batch, built);
+    }
+
+    // Lookups get a turn between batches of a bulk load
+    private synchronized void insertAll(List<Snippet> batch, List<Vector> built) {
+        for (int i = 0; i < batch.size(); i++) insert(batch.get(i), built.get(i));
+        batch.clear();
+        built.clear();
+    }
+
+    public void put(Snippet s) {
+        Vector v = vectorize(s);
+        synchronized (this) {
+            insert(s, v);
+        }
+    }
+
+    private void insert(Snippet s, Vector v) {
+        remove(s);
+        vectors.put(s, v);
+        for (int f : v.features) documentFrequency.merge(f, 1, Integer::sum);
+        for (int t = 0; t < TABLES; t++) {
+            tables.get(t).computeIfAbsent(v.signature[t], k -> new ArrayList<>()).add(s);
+        }
+    }
+
+    public synchronized void remove(Snippet s) {
+        Vector v = vectors.remove(s);
+        if (v == null) return;
+        for (int f : v.features) {
+            documentFrequency.computeIfPresent(f, (k, n) -> n > 1 ? n - 1 : null);
+        }
+        for (int t = 0; t < TABLES; t++) {
+            List<Snippet> bucket = tables.get(t).get(v.signature[t]);
+            if (bucket != null) {
+                bucket.remove(s);
+                if (bucket.isEmpty()) tables.get(t).remove(v.signature[t]);
+            }
+        }
+    }
+
+    /**
+     * Up to {@code k} library snippets most similar to {@code s}, best first. {@code s} itself does
+     * not need to be in the library (scanned function hits work too) and is never returned.
+     */
+    public List<Snippet> similar(Snippet s, int k) {
+        Vector q;
+        synchronized (this) {
+            q = vectors.get(s);
+        }
+        if (q == null) q = vectorize(s);
+        if (q.features.length == 0) return List.of();
+        synchronized (this) {
+            return rank(s, q, k);
+        }
+    }
+
+    private List<Snippet> rank(Snippet s, Vector q, int k) {
+        Set<Snippet> candidates = new LinkedHashSet<>();
+        for (int t = 0; t < TABLES && candidates.size() < MAX_CANDIDATES; t++) {
+            addBucket(candidates, t, q.signature[t]);
+        }
+        // multi-probe: neighbouring buckets one hyperplane away
+        for (int bit = 0; bit < BITS && candidates.size() < MAX_CANDIDATES; bit++) {
+            for (int t = 0; t < TABLES && candidates.size() < MAX_CANDIDATES; t++) {
+                addBucket(candidates, t, q.signature[t] ^ (1 << bit));
+            }
+        }
+        candidates.remove(s);
+
+        float[] qw = tfidf(q);
+        double qn = norm(qw);
+        PriorityQueue<Map.Entry<Snippet, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Snippet c : candidates) {
+            Vector v = vectors.get(c);
+            float[] vw = tfidf(v);
+            double score = dot(q, qw, v, vw) / (qn * norm(vw));
+            if (score <= 0) continue;
+            best.add(Map.entry(c, score));
+            if (best.size() > k) best.poll();
+        }
+        List<Snippet> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) result.add(best.poll().getKey());
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void addBucket(Set<Snippet> candidates, int table, int signature) {
+        List<Snippet> bucket = tables.get(table).get(signature);
+        if (bucket == null) return;
+        for (Snippet s : bucket) {
+            candidates.add(s);
+            if (candidates.size() >= MAX_CANDIDATES) return;
+        }
+    }
+
+    private float[] tfidf(Vector v) {
+        int n = vectors.size() + 1;
+        float[] w = new float[v.features.length];
+        for (int i = 0; i < w.length; i++) {
+            int df = documentFrequency.getOrDefault(v.features[i], 0);
+            w[i] = (float) ((1 + Math.log(v.counts[i])) * (Math.log((double) (n + 1) / (df + 1)) + 1));
+        }
+        return w;
+    }
+
+    private static double dot(Vector a, float[] aw, Vector b, float[] bw) {
+        double sum = 0;
+        int i = 0, j = 0;
+        while (i < a.features.length && j < b.features.length) {
+            if (a.features[i] == b.features[j]) sum += aw[i++] * bw[j++];
+            else if (a.features[i] < b.features[j]) i++;
+            else j++;
+        }
+        return sum;
+    }
+
+    private static double norm(float[] w) {
+        double sum = 0;
+        for (float x : w) sum += x * x;
+        return sum == 0 ? 1 : Math.sqrt(sum);
+    }
+
+    private Vector vectorize(Snippet s) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        String code = s.code;
+        // previous code token (for shingles) and end of the previous styled token
+        int[] state = {0, 0};
+        syntaxLookup.apply(s.language()).tokens(code, (start, end, type) -> {
+            state[0] = identifiers(code, state[1], start, counts, state[0]);
+            String cls = SyntaxLexer.STYLE_CLASSES[type];
+            if (type == SyntaxLexer.COMMENT) {
+                // comments contribute their words, not a position in the token stream
+                for (String word : code.substring(start, end).toLowerCase().split("\\W+")) {
+                    if (word.length() > 2) counts.merge(feature(cls, word), 1, Integer::sum);
+                }
+            } else {
+                int token = feature(cls, code.substring(start, end));
+                counts.merge(token, 1, Integer::sum);
+                if (state[0] != 0) counts.merge(31 * state[0] + token, 1, Integer::sum);
+                state[0] = token;
+            }
+            state[1] = end;
+        });
+        identifiers(code, state[1], code.length(), counts, state[0]);
+
+        int[] features = new int[counts.size()];
+        int i = 0;
+        for (int f : counts.keySet()) features[i++] = f;
+        Arrays.sort(features);
+        int[] tf = new int[features.length];
+        for (i = 0; i < features.length; i++) tf[i] = counts.get(features[i]);
+        return new Vector(features, tf, signatures(features, tf));
+    }
+
+    // Identifiers between highlighted tokens, plus shingles with the preceding token
+    private static int identifiers(String code, int from, int to, Map<Integer, Integer> counts, int previous) {
+        int i = from;
+        while (i < to) {
+            if (!Character.isJavaIdentifierPart(code.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < to && Character.isJavaIdentifierPart(code.charAt(i))) i++;
+            int token = feature("identifier", code.substring(start, i));
+            counts.merge(token, 1, Integer::sum);
+            if (previous != 0) counts.merge(31 * previous + token, 1, Integer::sum);
+            previous = token;
+        }
+        return previous;
+    }
+
+    private static int feature(String cls, String text) {
+        int h = (cls + ':' + text).hashCode();
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * One BITS-wide signature per table: the signs of projections onto random hyperplanes.
+     * Hyperplane components are derived from a hash of (feature, plane), so no matrix is stored.
+     */
+    private static int[] signatures(int[] features, int[] tf) {
+        int[] sig = new int[TABLES];
+        double[] proj = new double[TABLES * BITS];
+        for (int i = 0; i < features.length; i++) {
+            double w = 1 + Math.log(tf[i]);
+            // each 64-bit hash supplies the hyperplane signs for 64 planes
+            long bits = 0;
+            for (int p = 0; p < proj.length; p++) {
+                if ((p & 63) == 0) bits = mix(features[i] * SEED + p);
+                proj[p] += (bits & 1) == 0 ? w : -w;
+                bits >>>= 1;
+            }
+        }
+        for (int t = 0; t < TABLES; t++) {
+            for (int b = 0; b < BITS; b++) {
+                if (proj[t * BITS + b] > 0) sig[t] |= 1 << b;
+            }
+        }
+        return sig;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static class Vector {
+        final int[] features;
+        final int[] counts;
+        final int[] signature;
+
+        Vector(int[] features, int[] counts, int[] signature) {
+            this.features = features;
+            this.counts = counts;
+            this.signature = signature;
+        }
+    }
+}
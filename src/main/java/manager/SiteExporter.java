@@ -0,0 +1,378 @@
+package manager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes the library as a static site: one page per snippet with its code pre-highlighted using
+ * the same token classes as the preview, an index page, and a prebuilt search index that the
+ * index page filters with in the browser. Nothing here touches JavaFX.
+ * <p>
+ * Pages are rendered in parallel and each is written to disk as soon as it is done.
+ * {@code manifest.json} records a content hash per page, so exporting into the same folder
+ * again only re-renders snippets that changed, and deletes pages of snippets that are gone.
+ */
+public class SiteExporter {
+    // bump when page markup changes, so the next export re-renders every page
+    private static final int RENDER_VERSION = 1;
+    private static final String PAGES_DIR = "s";
+    private static final String MANIFEST = "manifest.json";
+    // Regex-only languages are not highlighted past this, like large previews. Their patterns
+    // recurse once per char inside a comment or string, up to about 1 KiB of stack per char
+    // before the JIT kicks in, so render threads get twice that for the longest such page.
+    private static final int LARGE_REGEX_CHARS = 32 * 1024;
+    private static final long RENDER_STACK_BYTES = 64L << 20;
+
+    // same colours as the preview's highlighting
+    private static final String CSS = String.join("\n",
+            "body { font-family: 'Segoe UI', 'Helvetica Neue', Arial, sans-serif; margin: 2em auto; max-width: 960px; padding: 0 1em; background: #f7fbff; color: #1b1f23; }",
+            "a { color: #0b5cad; text-decoration: none; } a:hover { text-decoration: underline; }",
+            ".meta { color: #586069; font-size: 0.9em; }",
+            "pre { background: white; border: 1px solid #e1e8ee; border-radius: 6px; padding: 1em; overflow-x: auto; }",
+            "#search { width: 100%; padding: 0.5em; font-size: 1em; box-sizing: border-box; }",
+            "#snippets { list-style: none; padding: 0; } #snippets li { padding: 0.5em 0; border-bottom: 1px solid #e1e8ee; }",
+            ".keyword { color: #0000ff; font-weight: bold; }",
+            ".comment { color: #008000; font-style: italic; }",
+            ".string { color: #a31515; }",
+            ".number { color: #098658; }",
+            ".annotation { color: #646695; }",
+            ".operator { color: #aa22ff; }",
+            "");
+
+    // Filters the index page's list with SEARCH_INDEX; every query word must prefix-match a term
+    private static final String SEARCH_JS = String.join("\n",
+            "(function () {",
+            "  var input = document.getElementById('search');",
+            "  var rows = document.querySelectorAll('#snippets li');",
+            "  var terms = Object.keys(SEARCH_INDEX.terms);",
+            "  input.addEventListener('input', function () {",
+            "    var words = input.value.toLowerCase().split(/[^\\p{L}\\p{N}]+/u).filter(Boolean);",
+            "    var hits = null;",
+            "    words.forEach(function (w) {",
+            "      var docs = {};",
+            "      terms.forEach(function (t) {",
+            "        if (t.lastIndexOf(w, 0) === 0) SEARCH_INDEX.terms[t].forEach(function (d) { docs[d] = true; });",
+            "      });",
+            "      if (hits !== null) Object.keys(hits).forEach(function (d) { if (!docs[d]) delete hits[d]; });",
+            "      else hits = docs;",
+            "    });",
+            "    rows.forEach(function (row) {",
+            "      row.style.display = hits === null || hits[row.dataset.i] ? '' : 'none';",
+            "    });",
+            "  });",
+            "})();",
+            "");
+
+    public static class Result {
+        public int snippets;
+        public int rendered;
+        public int unchanged;
+        public int removed;
+        public long millis;
+    }
+
+    private static final class Page {
+        final Snippet snippet;
+        final String file;
+        final String hash;
+
+        Page(Snippet snippet, String file, String hash) {
+            this.snippet = snippet;
+            this.file = file;
+            this.hash = hash;
+        }
+    }
+
+    private final Path dir;
+
+    public SiteExporter(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Export {@code library} into the site folder. {@code progress} gets (done, total) pages from
+     * the render threads. Fails with the first page that could not be written, after the others
+     * have finished; pages that were written stay recorded in the manifest.
+     */
+    public Result export(List<Snippet> library, BiConsumer<Integer, Integer> progress) throws IOException {
+        long start = System.nanoTime();
+        Metrics.ExportEvent event = new Metrics.ExportEvent();
+        event.begin();
+        Path pagesDir = dir.resolve(PAGES_DIR);
+        Files.createDirectories(pagesDir);
+        Map<String, String> previous = readManifest();
+
+        List<Snippet> sorted = new ArrayList<>(library);
+        sorted.sort(Comparator.comparingLong((Snippet s) -> s.lastModified).reversed());
+        List<Page> pages = new ArrayList<>(sorted.size());
+        Set<String> taken = new HashSet<>();
+        for (Snippet s : sorted) {
+            String hash = hash(s);
+            String base = pageName(s, hash);
+            String file = base + ".html";
+            for (int n = 2; !taken.add(file); n++) file = base + "-" + n + ".html";
+            pages.add(new Page(s, file, hash));
+        }
+
+        Result result = new Result();
+        result.snippets = pages.size();
+        List<Page> toRender = new ArrayList<>();
+        // only pages that are on disk and current; render threads add theirs as they finish
+        Map<String, String> manifest = new ConcurrentHashMap<>();
+        for (Page p : pages) {
+            if (p.hash.equals(previous.get(p.file)) && Files.exists(pagesDir.resolve(p.file))) {
+                manifest.put(p.file, p.hash);
+                result.unchanged++;
+            } else {
+                toRender.add(p);
+            }
+        }
+        IOException failure = renderAll(toRender, pagesDir, manifest, progress);
+        result.rendered = toRender.size();
+
+        for (String old : previous.keySet()) {
+            if (!taken.contains(old) && Files.deleteIfExists(pagesDir.resolve(old))) result.removed++;
+        }
+        writeManifest(manifest);
+        if (failure != null) throw failure;
+
+        write(dir.resolve("style.css"), w -> w.write(CSS));
+        write(dir.resolve("search-index.js"), w -> writeSearchIndex(w, pages));
+        write(dir.resolve("index.html"), w -> writeIndex(w, pages));
+
+        event.folder = dir.toString();
+        event.snippets = result.snippets;
+        event.rendered = result.rendered;
+        event.commit();
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Site export: " + result.rendered + " rendered, " + result.unchanged + " unchanged, "
+                + result.removed + " removed in " + result.millis + " ms to " + dir.toAbsolutePath());
+        return result;
+    }
+
+    // One page per task across all cores; returns the first failure instead of throwing it
+    private IOException renderAll(List<Page> pages, Path pagesDir, Map<String, String> manifest,
+                                  BiConsumer<Integer, Integer> progress) {
+        if (pages.isEmpty()) return null;
+        int threads = Math.min(pages.size(), Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(null, r, "site-export-" + threadCount.incrementAndGet(), RENDER_STACK_BYTES);
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger done = new AtomicInteger();
+        try {
+            List<Future<?>> pending = new ArrayList<>(pages.size());
+            for (Page p : pages) {
+                pending.add(pool.submit(() -> {
+                    long start = System.nanoTime();
+                    write(pagesDir.resolve(p.file), w -> writePage(w, p.snippet));
+                    manifest.put(p.file, p.hash);
+                    Metrics.EXPORT_PAGE.recordSince(start);
+                    progress.accept(done.incrementAndGet(), pages.size());
+                    return null;
+                }));
+            }
+            IOException failure = null;
+            for (Future<?> f : pending) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                    }
+                }
+            }
+            return failure;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new IOException("Export interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface Body {
+        void writeTo(Writer w) throws IOException;
+    }
+
+    // Streams straight to a temporary file, so a page is either the old one or complete
+    private static void write(Path target, Body body) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            body.writeTo(w);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writePage(Writer w, Snippet s) throws IOException {
+        w.write("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n<title>");
+        escape(w, s.title);
+        w.write("</title>\n<link rel=\"stylesheet\" href=\"../style.css\">\n</head>\n<body>\n");
+        w.write("<p><a href=\"../index.html\">&larr; All snippets</a></p>\n<h1>");
+        escape(w, s.title);
+        w.write("</h1>\n<p class=\"meta\">");
+        writeMeta(w, s);
+        w.write("</p>\n");
+        if (!s.description.isEmpty()) {
+            w.write("<p>");
+            escape(w, s.description);
+            w.write("</p>\n");
+        }
+        w.write("<pre><code class=\"language-");
+        escape(w, s.language().toLowerCase());
+        w.write("\">");
+        writeHighlighted(w, s.code.replace("\r\n", "\n"), s.language());
+        w.write("</code></pre>\n</body>\n</html>\n");
+    }
+
+    private static void writeMeta(Writer w, Snippet s) throws IOException {
+        escape(w, s.language());
+        List<String> tags = s.tags();
+        if (!tags.isEmpty()) {
+            w.write(" &middot; ");
+            escape(w, String.join(", ", tags));
+        }
+        w.write(" &middot; ");
+        w.write(SnippetRow.formatDate(s.lastModified));
+    }
+
+    private static void writeHighlighted(Writer w, String code, String language) throws IOException {
+        List<int[]> tokens = new ArrayList<>();
+        LanguageSyntax syntax = SyntaxRegistry.forLanguage(language);
+        if (syntax.lexer != null || code.length() <= LARGE_REGEX_CHARS) {
+            syntax.tokens(code, (start, end, type) -> tokens.add(new int[]{start, end, type}));
+        }
+        int pos = 0;
+        for (int[] t : tokens) {
+            if (t[0] < pos) continue;
+            escape(w, code, pos, t[0]);
+            w.write("<span class=\"");
+            w.write(SyntaxLexer.STYLE_CLASSES[t[2]]);
+            w.write("\">");
+            escape(w, code, t[0], t[1]);
+            w.write("</span>");
+            pos = t[1];
+        }
+        escape(w, code, pos, code.length());
+    }
+
+    private static void writeIndex(Writer w, List<Page> pages) throws IOException {
+        w.write("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n<title>Snippets</title>\n");
+        w.write("<link rel=\"stylesheet\" href=\"style.css\">\n</head>\n<body>\n<h1>Snippets</h1>\n");
+        w.write("<input id=\"search\" type=\"search\" placeholder=\"Search " + pages.size() + " snippets...\" autofocus>\n");
+        w.write("<ul id=\"snippets\">\n");
+        for (int i = 0; i < pages.size(); i++) {
+            Page p = pages.get(i);
+            w.write("<li data-i=\"" + i + "\"><a href=\"" + PAGES_DIR + "/");
+            escape(w, p.file);
+            w.write("\">");
+            escape(w, p.snippet.title);
+            w.write("</a><div class=\"meta\">");
+            writeMeta(w, p.snippet);
+            w.write("</div></li>\n");
+        }
+        w.write("</ul>\n<script src=\"search-index.js\"></script>\n<script>\n");
+        w.write(SEARCH_JS);
+        w.write("</script>\n</body>\n</html>\n");
+    }
+
+    /**
+     * An inverted index from lower-cased words of title, language, tags and description to the
+     * positions of the snippets in the index page's list. Written as a script rather than JSON so
+     * the site also works when opened from disk, where browsers refuse to fetch local files.
+     */
+    private static void writeSearchIndex(Writer w, List<Page> pages) throws IOException {
+        Map<String, Set<Integer>> terms = new TreeMap<>();
+        for (int i = 0; i < pages.size(); i++) {
+            Snippet s = pages.get(i).snippet;
+            String text = s.title + " " + s.language() + " " + String.join(" ", s.tags()) + " " + s.description;
+            for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) terms.computeIfAbsent(word, k -> new TreeSet<>()).add(i);
+            }
+        }
+        JSONObject json = new JSONObject();
+        JSONObject termsJson = new JSONObject();
+        terms.forEach((term, docs) -> termsJson.put(term, new JSONArray(docs)));
+        json.put("terms", termsJson);
+        w.write("var SEARCH_INDEX = ");
+        json.write(w);
+        w.write(";\n");
+    }
+
+    private static void escape(Writer w, String text) throws IOException {
+        escape(w, text, 0, text.length());
+    }
+
+    private static void escape(Writer w, String text, int from, int to) throws IOException {
+        int run = from;
+        for (int i = from; i < to; i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '&': entity = "&amp;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = "&quot;"; break;
+                case '\'': entity = "&#39;"; break;
+                default: continue;
+            }
+            w.write(text, run, i - run);
+            w.write(entity);
+            run = i + 1;
+        }
+        w.write(text, run, to - run);
+    }
+
+    // Stable across exports: the store file name where there is one
+    private static String pageName(Snippet s, String hash) {
+        if (s.sourceFile != null) {
+            String name = s.sourceFile.getName();
+            int dot = name.lastIndexOf('.');
+            return (dot > 0 ? name.substring(0, dot) : name).replaceAll("[^A-Za-z0-9._-]", "-");
+        }
+        return s.slug() + "-" + hash.substring(0, 8);
+    }
+
+    private static String hash(Snippet s) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        String key = RENDER_VERSION + "\0" + s.title + "\0" + s.language() + "\0" + s.tagsCsv() + "\0"
+                + s.description + "\0" + s.lastModified + "\0" + s.code;
+        return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)), 0, 16);
+    }
+
+    private Map<String, String> readManifest() {
+        Path file = dir.resolve(MANIFEST);
+        Map<String, String> pages = new HashMap<>();
+        if (!Files.exists(file)) return pages;
+        try {
+            // hashes include RENDER_VERSION, so pages from an older renderer never match
+            JSONObject saved = new JSONObject(Files.readString(file, StandardCharsets.UTF_8)).getJSONObject("pages");
+            for (String name : saved.keySet()) pages.put(name, saved.getString(name));
+        } catch (IOException | RuntimeException ex) {
+            System.out.println("Ignoring unreadable export manifest " + file + ": " + ex);
+        }
+        return pages;
+    }
+
+    private void writeManifest(Map<String, String> pages) throws IOException {
+        JSONObject json = new JSONObject().put("pages", new JSONObject(new TreeMap<>(pages)));
+        write(dir.resolve(MANIFEST), w -> w.write(json.toString(2)));
+    }
+}
@@ -0,0 +1,230 @@
+package manager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * One library entry. Title, code and description never change after construction (an edit
+ * creates a new snippet). Language and tags are {@link Vocabulary} ids, and timestamps are epoch
+ * millis, so a large library holds no per-snippet copies of shared names and no Date objects.
+ */
+public class Snippet {
+    private static final int[] NO_TAGS = new int[0];
+    // separates fields in the search key; no query contains it, so a match never spans fields
+    private static final char KEY_SEPARATOR = '\0';
+
+    public final String title;
+    public final String code;
+    public final int languageId;
+    // sorted, distinct Vocabulary ids
+    private final int[] tagIds;
+    public final String description;
+    public long dateCreated;
+    public long lastModified;
+    public File sourceFile;
+    // Set for search hits that come from a scanned project rather than the library
+    public ProjectFunction origin;
+    // Gist and file this snippet is kept in sync with, if any
+    public String gistId;
+    public String gistFile;
+    // lower-cased title, language, description and tags; built on the first search
+    private String searchKey;
+
+    public Snippet(String title, String code, String language, String tagsCsv, String description) {
+        this(title, code, Vocabulary.intern(language == null ? "" : language), parseTags(tagsCsv), description);
+    }
+
+    private Snippet(String title, String code, int languageId, int[] tagIds, String description) {
+        this.title = title == null ? "" : title;
+        this.code = code == null ? "" : code;
+        this.languageId = languageId;
+        this.tagIds = tagIds;
+        this.description = description == null ? "" : description;
+        this.dateCreated = System.currentTimeMillis();
+        this.lastModified = dateCreated;
+    }
+
+    private static int[] parseTags(String tagsCsv) {
+        if (tagsCsv == null || tagsCsv.isBlank()) return NO_TAGS;
+        String[] parts = tagsCsv.split(",");
+        int[] ids = new int[parts.length];
+        int n = 0;
+        for (String t : parts) {
+            if (!t.isBlank()) ids[n++] = Vocabulary.intern(t.trim());
+        }
+        if (n == 0) return NO_TAGS;
+        Arrays.sort(ids, 0, n);
+        int distinct = 1;
+        for (int i = 1; i < n; i++) {
+            if (ids[i] != ids[distinct - 1]) ids[distinct++] = ids[i];
+        }
+        return distinct == ids.length ? ids : Arrays.copyOf(ids, distinct);
+    }
+
+    public String language() {
+        return Vocabulary.name(languageId);
+    }
+
+    public List<String> tags() {
+        List<String> names = new ArrayList<>(tagIds.length);
+        for (int id : tagIds) names.add(Vocabulary.name(id));
+        return names;
+    }
+
+    public String tagsCsv() {
+        return String.join(",", tags());
+    }
+
+    public boolean hasTag(int tagId) {
+        return Arrays.binarySearch(tagIds, tagId) >= 0;
+    }
+
+    /**
+     * Whether any tag equals the given one ignoring case; {@code foldedId} is
+     * {@link Vocabulary#folded} of the tag looked for.
+     */
+    public boolean hasTagIgnoreCase(int foldedId) {
+        for (int id : tagIds) {
+            if (Vocabulary.folded(id) == foldedId) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether the lower-cased query occurs in the title, language, description or a tag.
+     */
+    public boolean matches(String lowerQuery) {
+        String key = searchKey;
+        if (key == null) {
+            StringBuilder sb = new StringBuilder(title.length() + description.length() + 32);
+            sb.append(title).append(KEY_SEPARATOR).append(language()).append(KEY_SEPARATOR).append(description);
+            for (int id : tagIds) sb.append(KEY_SEPARATOR).append(Vocabulary.name(id));
+            // a racing search may build it twice; both results are equal
+            key = searchKey = sb.toString().toLowerCase();
+        }
+        return key.contains(lowerQuery);
+    }
+
+    public Properties toProperties() {
+        Properties p = new Properties();
+        p.setProperty("title", title);
+        p.setProperty("code", Base64.getEncoder().encodeToString(code.getBytes(StandardCharsets.UTF_8)));
+        p.setProperty("language", language());
+        p.setProperty("tags", tagsCsv());
+        p.setProperty("description", description);
+        p.setProperty("dateCreated", Long.toString(dateCreated));
+        p.setProperty("lastModified", Long.toString(lastModified));
+        if (gistId != null) {
+            p.setProperty("gistId", gistId);
+            p.setProperty("gistFile", gistFile);
+        }
+        return p;
+    }
+
+    public static Snippet fromProperties(Properties p) {
+        String title = p.getProperty("title", "(untitled)");
+        String codeB64 = p.getProperty("code", "");
+        String code = "";
+        if (!codeB64.isEmpty()) {
+            try {
+                code = new String(Base64.getDecoder().decode(codeB64), StandardCharsets.UTF_8);
+            } catch (Exception ignored) {
+            }
+        }
+        String language = p.getProperty("language", "");
+        String tags = p.getProperty("tags", "");
+        String desc = p.getProperty("description", "");
+        Snippet s = new Snippet(title, code, language, tags, desc);
+        s.dateCreated = parseMillis(p.getProperty("dateCreated"), s.dateCreated);
+        s.lastModified = parseMillis(p.getProperty("lastModified"), s.lastModified);
+        s.gistId = p.getProperty("gistId");
+        s.gistFile = p.getProperty("gistFile");
+        return s;
+    }
+
+    private static long parseMillis(String value, long fallback) {
+        if (value == null) return fallback;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Plain JSON form used by the command line export; unlike the properties form the code is
+     * not Base64-encoded, so the output stays greppable.
+     */
+    public JSONObject toJson() {
+        JSONObject o = new JSONObject();
+        o.put("title", title);
+        o.put("language", language());
+        o.put("tags", new JSONArray(tags()));
+        o.put("description", description);
+        o.put("dateCreated", dateCreated);
+        o.put("lastModified", lastModified);
+        if (gistId != null) {
+            o.put("gistId", gistId);
+            o.put("gistFile", gistFile);
+        }
+        o.put("code", code);
+        return o;
+    }
+
+    public static Snippet fromJson(JSONObject o) {
+        JSONArray tags = o.optJSONArray("tags");
+        List<String> tagList = new ArrayList<>();
+        if (tags != null) for (int i = 0; i < tags.length(); i++) tagList.add(tags.optString(i));
+        Snippet s = new Snippet(o.optString("title", "(untitled)"), o.optString("code"), o.optString("language"),
+                String.join(",", tagList), o.optString("description"));
+        s.dateCreated = o.optLong("dateCreated", s.dateCreated);
+        s.lastModified = o.optLong("lastModified", s.lastModified);
+        s.gistId = o.optString("gistId", null);
+        s.gistFile = o.optString("gistFile", null);
+        return s;
+    }
+
+    /**
+     * Wrap a scanned function as an unsaved snippet so it can be shown next to library entries.
+     */
+    public static Snippet fromFunction(ProjectFunction f) {
+        Snippet s = new Snippet(f.functionName, f.code, f.language, f.projectName, f.projectName + "/" + f.fileName);
+        s.origin = f;
+        return s;
+    }
+
+    /**
+     * Copy of a scanned function hit that can be stored in the library.
+     */
+    public Snippet toLibrarySnippet() {
+        return new Snippet(title, code, languageId, tagIds, description);
+    }
+
+    /**
+     * The same entry with new code, as after an edit: created date kept, modified now. Gist
+     * link and source file are left to the caller.
+     */
+    public Snippet withCode(String newCode) {
+        Snippet s = new Snippet(title, newCode, languageId, tagIds, description);
+        s.dateCreated = dateCreated;
+        return s;
+    }
+
+    public String slug() {
+        String s = title.toLowerCase().replaceAll("[^a-z0-9]+", "-");
+        if (s.length() > 40) s = s.substring(0, 40);
+        s = s.replaceAll("-+", "-");
+        if (s.startsWith("-")) s = s.substring(1);
+        if (s.isEmpty()) s = "snippet";
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
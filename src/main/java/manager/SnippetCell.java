@@ -0,0 +1,46 @@
+package manager;
+
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+
+import java.util.function.Function;
+
+/**
+ * Library list cell whose nodes are built once; {@link #updateItem} only swaps label texts, so
+ * scrolling through a large library does not create a node graph per visible row.
+ */
+public class SnippetCell extends ListCell<Snippet> {
+    private final Function<Snippet, SnippetRow> rows;
+    private final HBox graphic = new HBox(8);
+    private final Label title = new Label();
+    private final Label meta = new Label();
+    private final Label date = new Label();
+
+    public SnippetCell(Function<Snippet, SnippetRow> rows) {
+        this.rows = rows;
+        title.setStyle("-fx-font-weight: bold;");
+        meta.setStyle("-fx-text-fill: #606e7b; -fx-font-size: 11px;");
+        date.setStyle("-fx-text-fill: #9aa6b2; -fx-font-size: 11px;");
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        graphic.getChildren().addAll(new VBox(2, title, meta), spacer, date);
+    }
+
+    @Override
+    protected void updateItem(Snippet item, boolean empty) {
+        super.updateItem(item, empty);
+        if (empty || item == null) {
+            setGraphic(null);
+        } else {
+            SnippetRow row = rows.apply(item);
+            title.setText(row.title);
+            meta.setText(row.meta);
+            date.setText(row.date);
+            setGraphic(graphic);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package manager;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.*;
+
+/**
+ * The library as shown in the list: newest {@code lastModified} first, with the display row of
+ * every entry computed when it is added.
+ * <p>
+ * Order is kept incrementally (a binary search per insert or update) instead of re-sorting the
+ * whole list, so adding or editing one snippet costs O(log n) comparisons plus one list change.
+ * Mutate the library through this class only; {@link #items()} is for reading and binding.
+ */
+public class SnippetList {
+    private static final Comparator<Snippet> NEWEST_FIRST = Comparator.comparingLong(SnippetList::modified).reversed();
+
+    private final ObservableList<Snippet> items = FXCollections.observableArrayList();
+    private final Map<Snippet, SnippetRow> rows = new IdentityHashMap<>();
+
+    public ObservableList<Snippet> items() {
+        return items;
+    }
+
+    /**
+     * Replace the whole library with one sort and a single list change.
+     */
+    public void setAll(Collection<Snippet> snippets) {
+        List<Snippet> sorted = new ArrayList<>(snippets);
+        sorted.sort(NEWEST_FIRST);
+        rows.clear();
+        for (Snippet s : sorted) rows.put(s, SnippetRow.of(s));
+        items.setAll(sorted);
+    }
+
+    public void insert(Snippet s) {
+        rows.put(s, SnippetRow.of(s));
+        items.add(insertionPoint(modified(s)), s);
+    }
+
+    /**
+     * Insert a batch with one list change per run of entries that land next to each other, which
+     * for freshly created snippets is a single change at the top.
+     */
+    public void insertAll(Collection<Snippet> batch) {
+        List<Snippet> sorted = new ArrayList<>(batch);
+        sorted.sort(NEWEST_FIRST);
+        for (Snippet s : sorted) rows.put(s, SnippetRow.of(s));
+        int i = 0;
+        while (i < sorted.size()) {
+            int at = insertionPoint(modified(sorted.get(i)));
+            long below = at < items.size() ? modified(items.get(at)) : Long.MIN_VALUE;
+            int j = i + 1;
+            while (j < sorted.size() && modified(sorted.get(j)) > below) j++;
+            items.addAll(at, sorted.subList(i, j));
+            i = j;
+        }
+    }
+
+    /**
+     * Swap an edited snippet for its previous version, moving it to its new position.
+     */
+    public void replace(Snippet old, Snippet s) {
+        remove(old);
+        insert(s);
+    }
+
+    public void remove(Snippet s) {
+        int i = indexOf(s);
+        if (i < 0) return;
+        items.remove(i);
+        rows.remove(s);
+    }
+
+    public SnippetRow row(Snippet s) {
+        SnippetRow row = rows.get(s);
+        // search hits from scanned projects are not library entries and are not kept
+        return row != null ? row : SnippetRow.of(s);
+    }
+
+    private int indexOf(Snippet s) {
+        long t = modified(s);
+        for (int i = insertionPoint(t) - 1; i >= 0 && modified(items.get(i)) == t; i--) {
+            if (items.get(i) == s) return i;
+        }
+        // lastModified was changed after insertion; fall back to a scan
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == s) return i;
+        }
+        return -1;
+    }
+
+    // First index whose entry is older than t, so equal timestamps keep insertion order
+    private int insertionPoint(long t) {
+        int lo = 0, hi = items.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (modified(items.get(mid)) >= t) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static long modified(Snippet s) {
+        return s.lastModified;
+    }
+}
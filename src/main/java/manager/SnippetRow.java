@@ -0,0 +1,33 @@
+package manager;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Display strings of one list row, computed once per snippet instead of on every cell update.
+ */
+public final class SnippetRow {
+    // DateTimeFormatter is immutable and thread-safe, unlike SimpleDateFormat, so one instance serves every row
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    public final String title;
+    public final String meta;
+    public final String date;
+
+    private SnippetRow(String title, String meta, String date) {
+        this.title = title;
+        this.meta = meta;
+        this.date = date;
+    }
+
+    public static SnippetRow of(Snippet s) {
+        // scanned functions are tagged by source instead of a modification date
+        if (s.origin != null) return new SnippetRow(s.title, s.language() + " · " + s.description, "scanned");
+        return new SnippetRow(s.title, s.language() + " · " + String.join(", ", s.tags()), formatDate(s.lastModified));
+    }
+
+    static String formatDate(long epochMillis) {
+        return epochMillis <= 0 ? "-" : DATE_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+}
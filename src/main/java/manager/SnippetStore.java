@@ -0,0 +1,100 @@
+package manager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The on-disk library: one {@code .properties} file per snippet in a storage directory.
+ */
+public class SnippetStore {
+    private static final String EXTENSION = ".properties";
+
+    private final File dir;
+
+    public SnippetStore(File dir) {
+        this.dir = dir;
+    }
+
+    public List<Snippet> loadAll() {
+        long start = System.nanoTime();
+        Metrics.LoadEvent event = new Metrics.LoadEvent();
+        event.begin();
+        List<Snippet> loaded = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+        if (files == null) files = new File[0];
+        for (File f : files) {
+            try (InputStream is = new FileInputStream(f)) {
+                Properties p = new Properties();
+                p.load(new InputStreamReader(is, StandardCharsets.UTF_8));
+                Snippet s = Snippet.fromProperties(p);
+                s.sourceFile = f;
+                loaded.add(s);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+        event.snippets = loaded.size();
+        event.commit();
+        Metrics.LOAD.recordSince(start);
+        return loaded;
+    }
+
+    /**
+     * Write one snippet. A snippet that was loaded or saved before overwrites its own file; only
+     * a snippet without one gets a new name from its slug.
+     */
+    public void save(Snippet s) throws IOException {
+        if (!dir.exists()) dir.mkdirs();
+        File f = s.sourceFile;
+        if (f == null) {
+            f = new File(dir, s.slug() + EXTENSION);
+            // never overwrite another snippet's file; add a timestamp instead
+            if (f.exists()) f = new File(dir, s.slug() + "-" + System.currentTimeMillis() + EXTENSION);
+        }
+        write(s, f);
+    }
+
+    /**
+     * Save many new snippets at once, off the FX thread. The directory is listed once up front
+     * instead of probed per file, and {@code progress} receives (saved, total) after each file.
+     */
+    public void saveAll(List<Snippet> snippets, BiConsumer<Integer, Integer> progress) throws IOException {
+        if (!dir.exists()) dir.mkdirs();
+        String[] existing = dir.list();
+        Set<String> taken = new HashSet<>(existing == null ? List.of() : Arrays.asList(existing));
+        String stamp = Long.toString(System.currentTimeMillis());
+        for (int i = 0; i < snippets.size(); i++) {
+            Snippet s = snippets.get(i);
+            String slug = s.slug();
+            String name = slug + EXTENSION;
+            for (int n = 1; taken.contains(name); n++) {
+                name = slug + "-" + stamp + (n > 1 ? "-" + n : "") + EXTENSION;
+            }
+            taken.add(name);
+            write(s, new File(dir, name));
+            progress.accept(i + 1, snippets.size());
+        }
+    }
+
+    private static void write(Snippet s, File f) throws IOException {
+        long start = System.nanoTime();
+        Metrics.SaveEvent event = new Metrics.SaveEvent();
+        event.begin();
+        // write beside the target and rename, so a failed write never leaves a truncated snippet
+        File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            Properties p = s.toProperties();
+            p.store(new OutputStreamWriter(os, StandardCharsets.UTF_8), "CodeSnippet");
+        }
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        s.sourceFile = f;
+        event.file = f.getName();
+        event.bytes = f.length();
+        event.commit();
+        Metrics.SAVE.recordSince(start);
+    }
+}
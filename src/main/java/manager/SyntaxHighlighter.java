@@ -0,0 +1,45 @@
+package manager;
+
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes highlighting for a whole text as one {@link StyleSpans} object, so it can run on a
+ * background thread and be applied with a single {@code setStyleSpans} call.
+ */
+public class SyntaxHighlighter {
+    // one shared style collection per token type, indexed by type
+    static final List<Collection<String>> TOKEN_CLASSES = tokenClasses();
+
+    public static StyleSpans<Collection<String>> computeHighlighting(String code, LanguageSyntax syntax) {
+        long started = System.nanoTime();
+        Metrics.HighlightEvent event = new Metrics.HighlightEvent();
+        event.begin();
+        StyleSpansBuilder<Collection<String>> spans = new StyleSpansBuilder<>();
+        int[] last = {0};
+        syntax.tokens(code, (start, end, type) -> {
+            spans.add(Collections.emptyList(), start - last[0]);
+            spans.add(TOKEN_CLASSES.get(type), end - start);
+            last[0] = end;
+        });
+        spans.add(Collections.emptyList(), code.length() - last[0]);
+        StyleSpans<Collection<String>> result = spans.create();
+        event.lexer = syntax.lexer != null;
+        event.characters = code.length();
+        event.commit();
+        Metrics.HIGHLIGHT.recordSince(started);
+        return result;
+    }
+
+    private static List<Collection<String>> tokenClasses() {
+        List<Collection<String>> classes = new ArrayList<>(SyntaxLexer.STYLE_CLASSES.length);
+        classes.add(Collections.emptyList());
+        for (int t = 1; t < SyntaxLexer.STYLE_CLASSES.length; t++) classes.add(Collections.singleton(SyntaxLexer.STYLE_CLASSES[t]));
+        return List.copyOf(classes);
+    }
+}
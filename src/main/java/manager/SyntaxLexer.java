@@ -0,0 +1,271 @@
+package manager;
+
+/**
+ * Hand-written, linear-time lexer producing the same token classes as the
+ * {@link LanguageSyntax} regexes for java, python, javascript, cpp and sql.
+ * <p>
+ * Every character is looked at a bounded number of times, so there is no backtracking or
+ * recursion on long comments and strings (the regex forms {@code (.|\R)*?} overflow the stack on
+ * large inputs). Tokens are reported as {@code (start, end, type)} ints through a {@link TokenSink}
+ * and keywords are matched against a char table in place, so lexing allocates nothing per token.
+ * <p>
+ * Multi-line constructs (block comments, strings, triple-quoted strings) are carried as a small
+ * int state: {@link #lex} returns the state at the end of the range, and lexing the next range
+ * with that state continues exactly where the previous one stopped. Ranges must start at a line
+ * start (after a {@code '\n'}) for the result to match a lex of the whole text.
+ * For the same reason one difference from the regexes is intended: an unterminated string or
+ * block comment runs to the end of the range, where the regex skips its opener and colors the
+ * rest as code.
+ */
+public class SyntaxLexer {
+    // token types
+    public static final int KEYWORD = 1;
+    public static final int COMMENT = 2;
+    public static final int STRING = 3;
+    public static final int NUMBER = 4;
+    public static final int ANNOTATION = 5;
+    public static final int OPERATOR = 6;
+    // style class per token type, same names as the LANGUAGE_SYNTAX style maps
+    public static final String[] STYLE_CLASSES = {null, "keyword", "comment", "string", "number", "annotation", "operator"};
+
+    // states carried across range boundaries
+    public static final int DEFAULT = 0;
+    public static final int BLOCK_COMMENT = 1;
+    public static final int DOUBLE_QUOTED = 2;
+    public static final int SINGLE_QUOTED = 3;
+    public static final int BACKTICK_QUOTED = 4;
+    public static final int TRIPLE_DOUBLE_QUOTED = 5;
+    public static final int TRIPLE_SINGLE_QUOTED = 6;
+
+    public interface TokenSink {
+        void token(int start, int end, int type);
+    }
+
+    private static final String OPERATOR_CHARS = "+-*/%=!<>&|^~?:";
+
+    public static final SyntaxLexer JAVA = new SyntaxLexer(
+            words("abstract assert boolean break byte case catch char class const continue default do double else enum "
+                    + "extends final finally float for goto if implements import instanceof int interface long native new "
+                    + "package private protected public return short static strictfp super switch synchronized this throw "
+                    + "throws transient try void volatile while"),
+            "//", true, true, false, false, false, true, true);
+
+    public static final SyntaxLexer PYTHON = new SyntaxLexer(
+            words("False None True and as assert async await break class continue def del elif else except finally for "
+                    + "from global if import in is lambda nonlocal not or pass raise return try while with yield"),
+            "#", false, true, true, false, true, false, true);
+
+    public static final SyntaxLexer JAVASCRIPT = new SyntaxLexer(
+            words("break case catch class const continue debugger default delete do else export extends finally for "
+                    + "function if import in instanceof let new return super switch this throw try typeof var void while "
+                    + "with yield"),
+            "//", true, true, true, true, false, false, true);
+
+    public static final SyntaxLexer CPP = new SyntaxLexer(
+            words("alignas alignof and and_eq asm atomic_cancel atomic_commit atomic_noexcept auto bitand bitor bool "
+                    + "break case catch char char16_t char32_t class compl const constexpr const_cast continue decltype "
+                    + "default delete do double dynamic_cast else enum explicit export extern false float for friend goto "
+                    + "if inline int long mutable namespace new noexcept not not_eq nullptr operator or or_eq private "
+                    + "protected public register reinterpret_cast return short signed sizeof static static_assert "
+                    + "static_cast struct switch template this thread_local throw true try typedef typeid typename union "
+                    + "unsigned using virtual void volatile wchar_t while xor xor_eq"),
+            "//", true, true, true, false, false, false, true);
+
+    public static final SyntaxLexer SQL = new SyntaxLexer(
+            words("SELECT FROM WHERE INSERT INTO VALUES UPDATE SET DELETE CREATE TABLE ALTER DROP JOIN INNER LEFT RIGHT "
+                    + "FULL ON AS AND OR NOT NULL DISTINCT GROUP BY ORDER HAVING LIMIT OFFSET"),
+            "--", true, false, true, false, false, false, false);
+
+    private final char[][] keywordTable;
+    private final int keywordMask;
+    private final String lineComment;
+    private final boolean blockComments;
+    private final boolean doubleQuoted;
+    private final boolean singleQuoted;
+    private final boolean backtickQuoted;
+    private final boolean tripleQuoted;
+    private final boolean annotations;
+    private final boolean operators;
+
+    private SyntaxLexer(String[] keywords, String lineComment, boolean blockComments, boolean doubleQuoted,
+                        boolean singleQuoted, boolean backtickQuoted, boolean tripleQuoted, boolean annotations,
+                        boolean operators) {
+        int size = Integer.highestOneBit(keywords.length * 4);
+        this.keywordTable = new char[size][];
+        this.keywordMask = size - 1;
+        for (String k : keywords) {
+            int slot = hash(k, 0, k.length()) & keywordMask;
+            while (keywordTable[slot] != null) slot = (slot + 1) & keywordMask;
+            keywordTable[slot] = k.toCharArray();
+        }
+        this.lineComment = lineComment;
+        this.blockComments = blockComments;
+        this.doubleQuoted = doubleQuoted;
+        this.singleQuoted = singleQuoted;
+        this.backtickQuoted = backtickQuoted;
+        this.tripleQuoted = tripleQuoted;
+        this.annotations = annotations;
+        this.operators = operators;
+    }
+
+    /**
+     * Lex {@code text[from, to)} starting in {@code state}, reporting tokens in order.
+     *
+     * @return the state at {@code to}, to be passed when lexing the following range
+     */
+    public int lex(CharSequence text, int from, int to, int state, TokenSink sink) {
+        int i = from;
+        if (state != DEFAULT) {
+            i = continueToken(text, i, to, state, false, sink);
+            if (i < 0) return state;
+        }
+        while (i < to) {
+            char c = text.charAt(i);
+            if (isWord(c)) {
+                i = word(text, i, to, sink);
+            } else if (startsWith(text, i, to, lineComment)) {
+                int end = i;
+                while (end < to && text.charAt(end) != '\n') end++;
+                sink.token(i, end, COMMENT);
+                i = end;
+            } else if (blockComments && c == '/' && i + 1 < to && text.charAt(i + 1) == '*') {
+                i = continueToken(text, i, to, BLOCK_COMMENT, true, sink);
+                if (i < 0) return BLOCK_COMMENT;
+            } else if (tripleQuoted && (c == '"' || c == '\'') && i + 2 < to && text.charAt(i + 1) == c && text.charAt(i + 2) == c) {
+                int s = c == '"' ? TRIPLE_DOUBLE_QUOTED : TRIPLE_SINGLE_QUOTED;
+                i = continueToken(text, i, to, s, true, sink);
+                if (i < 0) return s;
+            } else if ((c == '"' && doubleQuoted) || (c == '\'' && singleQuoted) || (c == '`' && backtickQuoted)) {
+                int s = c == '"' ? DOUBLE_QUOTED : c == '\'' ? SINGLE_QUOTED : BACKTICK_QUOTED;
+                i = continueToken(text, i, to, s, true, sink);
+                if (i < 0) return s;
+            } else if (annotations && c == '@' && i + 1 < to && isWord(text.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < to && isWord(text.charAt(end))) end++;
+                sink.token(i, end, ANNOTATION);
+                i = end;
+            } else if (operators && OPERATOR_CHARS.indexOf(c) >= 0) {
+                int end = i + 1;
+                while (end < to && OPERATOR_CHARS.indexOf(text.charAt(end)) >= 0) end++;
+                sink.token(i, end, OPERATOR);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Consume a multi-line token that starts at its opener ({@code fresh}) or resumes at
+     * {@code start} in {@code state}. Returns the index after its end, or -1 if it runs past {@code to}.
+     */
+    private static int continueToken(CharSequence text, int start, int to, int state, boolean fresh, TokenSink sink) {
+        int type = state == BLOCK_COMMENT ? COMMENT : STRING;
+        int i = start;
+        switch (state) {
+            case BLOCK_COMMENT:
+                // "/*/" must not close itself
+                if (fresh) i += 2;
+                while (i + 1 < to && !(text.charAt(i) == '*' && text.charAt(i + 1) == '/')) i++;
+                if (i + 1 < to) {
+                    sink.token(start, i + 2, type);
+                    return i + 2;
+                }
+                break;
+            case TRIPLE_DOUBLE_QUOTED:
+            case TRIPLE_SINGLE_QUOTED: {
+                char q = state == TRIPLE_DOUBLE_QUOTED ? '"' : '\'';
+                if (fresh) i += 3;
+                while (i + 2 < to && !(text.charAt(i) == q && text.charAt(i + 1) == q && text.charAt(i + 2) == q)) i++;
+                if (i + 2 < to) {
+                    sink.token(start, i + 3, type);
+                    return i + 3;
+                }
+                break;
+            }
+            default: {
+                char q = state == DOUBLE_QUOTED ? '"' : state == SINGLE_QUOTED ? '\'' : '`';
+                if (fresh) i++;
+                while (i < to) {
+                    char c = text.charAt(i);
+                    if (c == '\\') i += 2;
+                    else if (c == q) {
+                        sink.token(start, i + 1, type);
+                        return i + 1;
+                    } else i++;
+                }
+                break;
+            }
+        }
+        if (to > start) sink.token(start, to, type);
+        return -1;
+    }
+
+    /**
+     * A run of word characters: a keyword, a number ({@code \d+(\.\d+)?}) or a plain identifier.
+     */
+    private int word(CharSequence text, int start, int to, TokenSink sink) {
+        int end = start;
+        boolean digits = true;
+        while (end < to && isWord(text.charAt(end))) {
+            if (!isDigit(text.charAt(end))) digits = false;
+            end++;
+        }
+        if (digits) {
+            // optional fraction, only when it is itself a complete run of digits
+            if (end + 1 < to && text.charAt(end) == '.' && isDigit(text.charAt(end + 1))) {
+                int frac = end + 1;
+                while (frac < to && isDigit(text.charAt(frac))) frac++;
+                if (frac >= to || !isWord(text.charAt(frac))) end = frac;
+            }
+            sink.token(start, end, NUMBER);
+        } else if (isKeyword(text, start, end)) {
+            sink.token(start, end, KEYWORD);
+        }
+        return end;
+    }
+
+    private boolean isKeyword(CharSequence text, int start, int end) {
+        int slot = hash(text, start, end) & keywordMask;
+        char[] k;
+        while ((k = keywordTable[slot]) != null) {
+            if (k.length == end - start && regionMatches(text, start, k)) return true;
+            slot = (slot + 1) & keywordMask;
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, char[] k) {
+        for (int j = 0; j < k.length; j++) {
+            if (text.charAt(start + j) != k[j]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + s.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean startsWith(CharSequence text, int i, int to, String prefix) {
+        if (prefix == null || i + prefix.length() > to) return false;
+        for (int j = 0; j < prefix.length(); j++) {
+            if (text.charAt(i + j) != prefix.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isWord(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static String[] words(String s) {
+        return s.split(" ");
+    }
+}
@@ -0,0 +1,210 @@
+package manager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * The syntax definitions behind every highlighted view. A language's patterns are compiled the
+ * first time it is asked for, not when the app starts, so startup pays only for what the first
+ * screen shows.
+ */
+public class SyntaxRegistry {
+    private static final String DEFAULT_LANGUAGE = "java";
+
+    private static final Map<String, Supplier<LanguageSyntax>> DEFINITIONS = Map.of(
+            "java", SyntaxRegistry::java,
+            "python", SyntaxRegistry::python,
+            "javascript", SyntaxRegistry::javascript,
+            "cpp", SyntaxRegistry::cpp,
+            "sql", SyntaxRegistry::sql,
+            "html", SyntaxRegistry::html,
+            "css", SyntaxRegistry::css
+    );
+
+    private static final Map<String, LanguageSyntax> COMPILED = new ConcurrentHashMap<>();
+
+    private SyntaxRegistry() {
+    }
+
+    /**
+     * Syntax for a language name as stored on snippets (case and surrounding blanks ignored);
+     * unknown languages get the Java syntax.
+     */
+    public static LanguageSyntax forLanguage(String language) {
+        String langKey = language == null ? "" : language.toLowerCase().trim();
+        if (!DEFINITIONS.containsKey(langKey)) langKey = DEFAULT_LANGUAGE;
+        return COMPILED.computeIfAbsent(langKey, k -> DEFINITIONS.get(k).get());
+    }
+
+    // Java syntax
+    private static LanguageSyntax java() {
+        String javaKeywords = "\\b(abstract|assert|boolean|break|byte|case|catch|char|class|const|continue|" +
+                "default|do|double|else|enum|extends|final|finally|float|for|goto|if|implements|import|" +
+                "instanceof|int|interface|long|native|new|package|private|protected|public|return|short|" +
+                "static|strictfp|super|switch|synchronized|this|throw|throws|transient|try|void|volatile|while)\\b";
+        String javaComments = "//[^\n]*|/\\*(.|\\R)*?\\*/";
+        String javaStrings = "\"([^\"\\\\]|\\\\.)*\"";
+        String javaNumbers = "\\b\\d+(\\.\\d+)?\\b";
+        String javaAnnotations = "@\\w+";
+        String javaOperators = "[+\\-*/%=!<>&|^~?:]+";
+        Pattern javaPattern = Pattern.compile(
+                "(?<KEYWORD>" + javaKeywords + ")"
+                        + "|(?<COMMENT>" + javaComments + ")"
+                        + "|(?<STRING>" + javaStrings + ")"
+                        + "|(?<NUMBER>" + javaNumbers + ")"
+                        + "|(?<ANNOTATION>" + javaAnnotations + ")"
+                        + "|(?<OPERATOR>" + javaOperators + ")"
+        );
+        Map<String, String> javaStyles = Map.of(
+                "KEYWORD", "keyword",
+                "COMMENT", "comment",
+                "STRING", "string",
+                "NUMBER", "number",
+                "ANNOTATION", "annotation",
+                "OPERATOR", "operator"
+        );
+        return new LanguageSyntax(javaPattern, javaStyles, SyntaxLexer.JAVA);
+    }
+
+    // Python syntax
+    private static LanguageSyntax python() {
+        String pyKeywords = "\\b(False|None|True|and|as|assert|async|await|break|class|continue|def|del|elif|else|except|" +
+                "finally|for|from|global|if|import|in|is|lambda|nonlocal|not|or|pass|raise|return|try|while|with|yield)\\b";
+        String pyComments = "#[^\\n]*";
+        String pyStrings = "\"\"\"(.|\\R)*?\"\"\"|'''(.|\\R)*?'''|\"([^\"\\\\]|\\\\.)*\"|'([^'\\\\]|\\\\.)*'";
+        String pyNumbers = "\\b\\d+(\\.\\d+)?\\b";
+        String pyOperators = "[+\\-*/%=!<>&|^~?:]+";
+        Pattern pyPattern = Pattern.compile(
+                "(?<KEYWORD>" + pyKeywords + ")"
+                        + "|(?<COMMENT>" + pyComments + ")"
+                        + "|(?<STRING>" + pyStrings + ")"
+                        + "|(?<NUMBER>" + pyNumbers + ")"
+                        + "|(?<OPERATOR>" + pyOperators + ")"
+        );
+        Map<String, String> pyStyles = Map.of(
+                "KEYWORD", "keyword",
+                "COMMENT", "comment",
+                "STRING", "string",
+                "NUMBER", "number",
+                "OPERATOR", "operator"
+        );
+        return new LanguageSyntax(pyPattern, pyStyles, SyntaxLexer.PYTHON);
+    }
+
+    // JavaScript syntax
+    private static LanguageSyntax javascript() {
+        String jsKeywords = "\\b(break|case|catch|class|const|continue|debugger|default|delete|do|else|export|extends|" +
+                "finally|for|function|if|import|in|instanceof|let|new|return|super|switch|this|throw|try|typeof|var|void|while|with|yield)\\b";
+        String jsComments = "//[^\\n]*|/\\*(.|\\R)*?\\*/";
+        String jsStrings = "\"([^\"\\\\]|\\\\.)*\"|'([^'\\\\]|\\\\.)*'|`([^`\\\\]|\\\\.)*`";
+        String jsNumbers = "\\b\\d+(\\.\\d+)?\\b";
+        String jsOperators = "[+\\-*/%=!<>&|^~?:]+";
+        Pattern jsPattern = Pattern.compile(
+                "(?<KEYWORD>" + jsKeywords + ")"
+                        + "|(?<COMMENT>" + jsComments + ")"
+                        + "|(?<STRING>" + jsStrings + ")"
+                        + "|(?<NUMBER>" + jsNumbers + ")"
+                        + "|(?<OPERATOR>" + jsOperators + ")"
+        );
+        Map<String, String> jsStyles = Map.of(
+                "KEYWORD", "keyword",
+                "COMMENT", "comment",
+                "STRING", "string",
+                "NUMBER", "number",
+                "OPERATOR", "operator"
+        );
+        return new LanguageSyntax(jsPattern, jsStyles, SyntaxLexer.JAVASCRIPT);
+    }
+
+    // C++ syntax
+    private static LanguageSyntax cpp() {
+        String cppKeywords = "\\b(alignas|alignof|and|and_eq|asm|atomic_cancel|atomic_commit|atomic_noexcept|" +
+                "auto|bitand|bitor|bool|break|case|catch|char|char16_t|char32_t|class|compl|const|constexpr|const_cast|continue|" +
+                "decltype|default|delete|do|double|dynamic_cast|else|enum|explicit|export|extern|false|float|for|friend|goto|if|" +
+                "inline|int|long|mutable|namespace|new|noexcept|not|not_eq|nullptr|operator|or|or_eq|private|protected|public|" +
+                "register|reinterpret_cast|return|short|signed|sizeof|static|static_assert|static_cast|struct|switch|template|" +
+                "this|thread_local|throw|true|try|typedef|typeid|typename|union|unsigned|using|virtual|void|volatile|wchar_t|while|xor|xor_eq)\\b";
+        String cppComments = "//[^\\n]*|/\\*(.|\\R)*?\\*/";
+        String cppStrings = "\"([^\"\\\\]|\\\\.)*\"|'([^'\\\\]|\\\\.)*'";
+        String cppNumbers = "\\b\\d+(\\.\\d+)?\\b";
+        String cppOperators = "[+\\-*/%=!<>&|^~?:]+";
+        Pattern cppPattern = Pattern.compile(
+                "(?<KEYWORD>" + cppKeywords + ")"
+                        + "|(?<COMMENT>" + cppComments + ")"
+                        + "|(?<STRING>" + cppStrings + ")"
+                        + "|(?<NUMBER>" + cppNumbers + ")"
+                        + "|(?<OPERATOR>" + cppOperators + ")"
+        );
+        Map<String, String> cppStyles = Map.of(
+                "KEYWORD", "keyword",
+                "COMMENT", "comment",
+                "STRING", "string",
+                "NUMBER", "number",
+                "OPERATOR", "operator"
+        );
+        return new LanguageSyntax(cppPattern, cppStyles, SyntaxLexer.CPP);
+    }
+
+    // SQL syntax
+    private static LanguageSyntax sql() {
+        String sqlKeywords = "\\b(SELECT|FROM|WHERE|INSERT|INTO|VALUES|UPDATE|SET|DELETE|CREATE|TABLE|ALTER|DROP|JOIN|" +
+                "INNER|LEFT|RIGHT|FULL|ON|AS|AND|OR|NOT|NULL|DISTINCT|GROUP|BY|ORDER|HAVING|LIMIT|OFFSET)\\b";
+        String sqlComments = "--[^\\n]*|/\\*(.|\\R)*?\\*/";
+        String sqlStrings = "'([^'\\\\]|\\\\.)*'";
+        String sqlNumbers = "\\b\\d+(\\.\\d+)?\\b";
+        Pattern sqlPattern = Pattern.compile(
+                "(?<KEYWORD>" + sqlKeywords + ")"
+                        + "|(?<COMMENT>" + sqlComments + ")"
+                        + "|(?<STRING>" + sqlStrings + ")"
+                        + "|(?<NUMBER>" + sqlNumbers + ")"
+        );
+        Map<String, String> sqlStyles = Map.of(
+                "KEYWORD", "keyword",
+                "COMMENT", "comment",
+                "STRING", "string",
+                "NUMBER", "number"
+        );
+        return new LanguageSyntax(sqlPattern, sqlStyles, SyntaxLexer.SQL);
+    }
+
+    // HTML syntax
+    private static LanguageSyntax html() {
+        String htmlTags = "</?[a-zA-Z][^>]*>";
+        String htmlComments = "<!--(.|\\R)*?-->";
+        String htmlStrings = "\"([^\"]*)\"|'([^']*)'";
+        Pattern htmlPattern = Pattern.compile(
+                "(?<TAG>" + htmlTags + ")"
+                        + "|(?<COMMENT>" + htmlComments + ")"
+                        + "|(?<STRING>" + htmlStrings + ")"
+        );
+        Map<String, String> htmlStyles = Map.of(
+                "TAG", "keyword",
+                "COMMENT", "comment",
+                "STRING", "string"
+        );
+        return new LanguageSyntax(htmlPattern, htmlStyles);
+    }
+
+    // CSS syntax
+    private static LanguageSyntax css() {
+        String cssSelectors = "[.#]?[a-zA-Z0-9_-]+";
+        String cssProperties = "\\b([a-z-]+)\\b(?=\\s*:)";
+        String cssValues = "[^;{}]+";
+        String cssComments = "/\\*(.|\\R)*?\\*/";
+        Pattern cssPattern = Pattern.compile(
+                "(?<PROPERTY>" + cssProperties + ")"
+                        + "|(?<VALUE>" + cssValues + ")"
+                        + "|(?<COMMENT>" + cssComments + ")"
+                        + "|(?<SELECTOR>" + cssSelectors + ")"
+        );
+        Map<String, String> cssStyles = Map.of(
+                "PROPERTY", "keyword",
+                "VALUE", "string",
+                "COMMENT", "comment",
+                "SELECTOR", "annotation"
+        );
+        return new LanguageSyntax(cssPattern, cssStyles);
+    }
+}
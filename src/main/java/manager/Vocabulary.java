@@ -0,0 +1,66 @@
+package manager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide dictionary for the few hundred language and tag names a library uses. Each
+ * distinct string gets a small integer id once, so snippets store ids instead of their own
+ * copies and tag or language checks compare ints.
+ * <p>
+ * Ids are never reused. Every id also has a "folded" id, the id of its lower-cased form, for
+ * case-insensitive matching.
+ */
+public final class Vocabulary {
+    private static final Map<String, Integer> IDS = new HashMap<>();
+    // written under the class lock and republished through the volatile fields on every intern
+    private static volatile String[] names = new String[64];
+    private static volatile int[] folded = new int[64];
+    private static int size;
+
+    public static final int EMPTY = intern("");
+
+    private Vocabulary() {
+    }
+
+    public static synchronized int intern(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) return id;
+        String lower = name.toLowerCase();
+        int foldedId = lower.equals(name) ? -1 : intern(lower);
+        int newId = size++;
+        String[] n = names;
+        int[] f = folded;
+        if (newId == n.length) {
+            n = Arrays.copyOf(n, n.length * 2);
+            f = Arrays.copyOf(f, f.length * 2);
+        }
+        n[newId] = name;
+        f[newId] = foldedId < 0 ? newId : foldedId;
+        IDS.put(name, newId);
+        folded = f;
+        names = n;
+        return newId;
+    }
+
+    /**
+     * Id of an already interned name, or -1; lookups never grow the dictionary.
+     */
+    public static synchronized int find(String name) {
+        Integer id = IDS.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public static String name(int id) {
+        return names[id];
+    }
+
+    public static int folded(int id) {
+        return folded[id];
+    }
+
+    public static synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,338 @@
+package manager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The project roots the user keeps indexed, persisted in {@code workspace.json}, and the
+ * background thread that keeps their functions in the search index current.
+ * <p>
+ * One refresh thread at minimum priority scans one root at a time. Roots somebody is waiting for
+ * (just added, or refreshed by hand) go first. Then comes the root open in the function picker,
+ * once it is older than {@link #FOCUSED_REFRESH_INTERVAL_MS}, then whichever root was indexed
+ * longest ago once it is older than {@link #REFRESH_INTERVAL_MS}.
+ * Background refreshes may use only a share of one core, and a smaller share while the user is
+ * working in the window; requested scans, and a background scan that a request is waiting
+ * behind, run at full speed.
+ */
+public class Workspace {
+    static final long REFRESH_INTERVAL_MS = 30 * 60_000;
+    static final long FOCUSED_REFRESH_INTERVAL_MS = 5 * 60_000;
+    // let the app finish starting before background refreshes compete with it
+    private static final long STARTUP_DELAY_MS = 30_000;
+    private static final double IDLE_CPU_SHARE = 0.5;
+    private static final double ACTIVE_CPU_SHARE = 0.1;
+    // input within this window counts as the user being active
+    private static final long ACTIVE_WINDOW_NANOS = 3_000_000_000L;
+    // work done between throttle pauses
+    private static final long SLICE_NANOS = 50_000_000L;
+
+    public enum Status {QUEUED, SCANNING, INDEXED, FAILED, MISSING}
+
+    public interface Listener {
+        /**
+         * Called on the refresh thread once a root's new functions are in the search index.
+         */
+        void indexed(Root root);
+    }
+
+    public static class Root {
+        public final Path path;
+        public volatile Status status = Status.QUEUED;
+        // epoch millis of the last successful scan, 0 if unknown
+        public volatile long lastIndexed;
+        public volatile int functions;
+        public volatile long scanMillis;
+        public volatile String error;
+        // the rest is only touched on the refresh thread
+        private long lastAttempt;
+        private boolean requested;
+        private final List<Consumer<List<ProjectFunction>>> waiting = new ArrayList<>();
+
+        Root(Path path) {
+            this.path = path;
+        }
+
+        JSONObject toJson() {
+            return new JSONObject()
+                    .put("path", path.toString())
+                    .put("status", status.name())
+                    .put("lastIndexed", lastIndexed)
+                    .put("functions", functions)
+                    .put("scanMillis", scanMillis)
+                    .put("error", error == null ? JSONObject.NULL : error);
+        }
+
+        static Root fromJson(JSONObject json) {
+            Root r = new Root(Path.of(json.getString("path")));
+            r.lastIndexed = json.optLong("lastIndexed", 0);
+            r.functions = json.optInt("functions", 0);
+            r.scanMillis = json.optLong("scanMillis", 0);
+            r.error = json.optString("error", null);
+            // a scan cut short by exit starts over
+            Status saved = Status.valueOf(json.optString("status", Status.QUEUED.name()));
+            r.status = saved == Status.SCANNING ? Status.QUEUED : saved;
+            return r;
+        }
+    }
+
+    private final Path file;
+    private final SearchIndex index;
+    private final Path archiveCache;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "workspace-refresh");
+        t.setDaemon(true);
+        // archive scanner threads inherit this
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    // read from any thread, changed only on the scheduler thread
+    private final List<Root> roots = new CopyOnWriteArrayList<>();
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private final Throttle throttle = new Throttle();
+    private volatile long lastUserActivity = System.nanoTime() - ACTIVE_WINDOW_NANOS;
+    private Path focused;
+    private long backgroundAfter;
+    private ScheduledFuture<?> wakeUp;
+
+    public Workspace(Path file, SearchIndex index, Path archiveCache, Listener listener) {
+        this.file = file;
+        this.index = index;
+        this.archiveCache = archiveCache;
+        this.listener = listener;
+        // queued ahead of everything else, so a request() never saves over the saved roots
+        scheduler.execute(() -> {
+            backgroundAfter = System.currentTimeMillis() + STARTUP_DELAY_MS;
+            load();
+        });
+    }
+
+    /**
+     * Start refreshing. Roots already in the search index but not in the workspace (indexed
+     * before it existed) are adopted, with an unknown index time.
+     */
+    public void start() {
+        scheduler.execute(() -> {
+            for (String r : index.roots()) {
+                Path path = Path.of(r);
+                if (find(path) == null) {
+                    Root root = new Root(path);
+                    root.status = Status.INDEXED;
+                    roots.add(root);
+                }
+            }
+            save();
+            pump();
+        });
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public List<Root> roots() {
+        return List.copyOf(roots);
+    }
+
+    /**
+     * Register {@code path} if needed and scan it next, at full speed. {@code onScanned} gets the
+     * functions found, on the refresh thread; a failed scan hands it an empty list.
+     */
+    public void request(Path path, Consumer<List<ProjectFunction>> onScanned) {
+        Path key = key(path);
+        pendingRequests.incrementAndGet();
+        scheduler.execute(() -> {
+            pendingRequests.decrementAndGet();
+            Root root = find(key);
+            if (root == null) {
+                root = new Root(key);
+                roots.add(root);
+                save();
+            }
+            root.requested = true;
+            if (root.status != Status.SCANNING) root.status = Status.QUEUED;
+            if (onScanned != null) root.waiting.add(onScanned);
+            pump();
+        });
+    }
+
+    /**
+     * Drop a root from the workspace and its functions from the search index.
+     */
+    public void remove(Path path) {
+        Path key = key(path);
+        scheduler.execute(() -> {
+            Root root = find(key);
+            if (root == null) return;
+            roots.remove(root);
+            save();
+            try {
+                index.removeRoot(key);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * The root whose functions the picker is showing, or null when it is closed. Its refreshes
+     * go ahead of every other background refresh.
+     */
+    public void focus(Path path) {
+        Path key = path == null ? null : key(path);
+        scheduler.execute(() -> {
+            focused = key;
+            pump();
+        });
+    }
+
+    /**
+     * Note user input; background scans slow down for a few seconds after each call. Cheap
+     * enough to call for every input event.
+     */
+    public void userActive() {
+        lastUserActivity = System.nanoTime();
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private Root find(Path key) {
+        for (Root r : roots) {
+            if (r.path.equals(key)) return r;
+        }
+        return null;
+    }
+
+    // Scan the next root that is due, or sleep until one will be
+    private void pump() {
+        if (wakeUp != null) wakeUp.cancel(false);
+        wakeUp = null;
+        long now = System.currentTimeMillis();
+        Root next = null;
+        for (Root r : roots) {
+            if (r.requested && (next == null || r.path.equals(focused))) next = r;
+        }
+        if (next != null) {
+            scan(next, false);
+            scheduler.execute(this::pump);
+            return;
+        }
+        long dueAt = Long.MAX_VALUE;
+        for (Root r : roots) {
+            boolean isFocused = r.path.equals(focused);
+            long interval = isFocused ? FOCUSED_REFRESH_INTERVAL_MS : REFRESH_INTERVAL_MS;
+            long due = Math.max(backgroundAfter, Math.max(r.lastIndexed, r.lastAttempt) + interval);
+            // a due focused root beats every other due root, however overdue
+            if (isFocused && due <= now) {
+                next = r;
+                dueAt = due;
+                break;
+            }
+            if (due < dueAt) {
+                dueAt = due;
+                next = r;
+            }
+        }
+        if (next == null) return;
+        if (dueAt <= now) {
+            scan(next, true);
+            scheduler.execute(this::pump);
+        } else {
+            wakeUp = scheduler.schedule(this::pump, dueAt - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scan(Root root, boolean background) {
+        List<Consumer<List<ProjectFunction>>> waiting = new ArrayList<>(root.waiting);
+        root.waiting.clear();
+        root.requested = false;
+        root.lastAttempt = System.currentTimeMillis();
+        List<ProjectFunction> functions = List.of();
+        if (!Files.isDirectory(root.path) && !Files.isRegularFile(root.path)) {
+            // maybe an unmounted drive; keep its functions and try again later
+            root.status = Status.MISSING;
+            root.error = "Not found";
+        } else {
+            root.status = Status.SCANNING;
+            long start = System.nanoTime();
+            try {
+                functions = ProjectScanner.indexProjectFolder(root.path.toFile(), archiveCache, background ? throttle : () -> { });
+                index.putRoot(root.path, functions);
+                root.functions = functions.size();
+                root.lastIndexed = System.currentTimeMillis();
+                root.scanMillis = (System.nanoTime() - start) / 1_000_000;
+                root.error = null;
+                root.status = Status.INDEXED;
+                listener.indexed(root);
+            } catch (IOException | RuntimeException ex) {
+                ex.printStackTrace();
+                root.status = Status.FAILED;
+                root.error = String.valueOf(ex.getMessage());
+            }
+        }
+        save();
+        for (Consumer<List<ProjectFunction>> c : waiting) c.accept(functions);
+    }
+
+    /**
+     * Called before each file of a background scan. Sleeps often enough to keep each scanning
+     * thread at the allowed share of a core, and not at all once a request is waiting.
+     */
+    private final class Throttle implements Runnable {
+        private final ThreadLocal<long[]> sliceStart = ThreadLocal.withInitial(() -> new long[]{System.nanoTime()});
+
+        @Override
+        public void run() {
+            long[] start = sliceStart.get();
+            long now = System.nanoTime();
+            long busy = now - start[0];
+            if (busy < SLICE_NANOS) return;
+            // requests queue behind the scan on the refresh thread; finish it quickly for them
+            if (pendingRequests.get() == 0) {
+                double share = now - lastUserActivity < ACTIVE_WINDOW_NANOS ? ACTIVE_CPU_SHARE : IDLE_CPU_SHARE;
+                try {
+                    TimeUnit.NANOSECONDS.sleep((long) (busy * (1 - share) / share));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            start[0] = System.nanoTime();
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file)) return;
+        try {
+            JSONArray saved = new JSONObject(Files.readString(file, StandardCharsets.UTF_8)).getJSONArray("roots");
+            for (int i = 0; i < saved.length(); i++) {
+                Root root = Root.fromJson(saved.getJSONObject(i));
+                if (find(root.path) == null) roots.add(root);
+            }
+        } catch (IOException | RuntimeException ex) {
+            System.out.println("Ignoring unreadable workspace " + file + ": " + ex);
+        }
+    }
+
+    private void save() {
+        JSONArray array = new JSONArray();
+        for (Root r : roots) array.put(r.toJson());
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, new JSONObject().put("roots", array).toString(2), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package manager;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The registered project roots with their scan status, refreshed once a second while the window
+ * is open. Roots can be added, refreshed now or removed; the scans themselves run on the
+ * workspace's background thread.
+ */
+public class WorkspaceView {
+    private static final Duration REFRESH = Duration.seconds(1);
+
+    public static void show(Stage owner, Workspace workspace) {
+        Stage stage = new Stage();
+        stage.initOwner(owner);
+        stage.setTitle("Workspace");
+
+        TableView<Workspace.Root> table = new TableView<>(FXCollections.observableArrayList(workspace.roots()));
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        table.setPlaceholder(new Label("No project roots. Add a folder to keep it indexed."));
+        table.getColumns().add(column("Root", r -> r.path.toString()));
+        table.getColumns().add(column("Status", r -> r.error == null ? r.status.name() : r.status + " (" + r.error + ")"));
+        table.getColumns().add(column("Functions", r -> r.lastIndexed == 0 && r.functions == 0 ? "-" : Integer.toString(r.functions)));
+        table.getColumns().add(column("Last indexed", r -> SnippetRow.formatDate(r.lastIndexed)));
+        table.getColumns().add(column("Took", r -> r.scanMillis == 0 ? "-" : r.scanMillis + " ms"));
+        table.getColumns().get(0).setPrefWidth(280);
+
+        Timeline refresh = new Timeline(new KeyFrame(REFRESH, e -> {
+            List<Workspace.Root> roots = workspace.roots();
+            // replacing the items drops the selection, so only do it when roots came or went
+            if (roots.equals(table.getItems())) table.refresh();
+            else table.getItems().setAll(roots);
+        }));
+        refresh.setCycleCount(Timeline.INDEFINITE);
+        refresh.play();
+        stage.setOnHidden(e -> refresh.stop());
+
+        Button add = new Button("Add Folder...");
+        add.setOnAction(e -> {
+            DirectoryChooser chooser = new DirectoryChooser();
+            chooser.setTitle("Add Project Folder");
+            File folder = chooser.showDialog(stage);
+            if (folder != null) workspace.request(folder.toPath(), null);
+        });
+
+        Button refreshNow = new Button("Refresh Now");
+        refreshNow.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
+        refreshNow.setOnAction(e -> workspace.request(table.getSelectionModel().getSelectedItem().path, null));
+
+        Button remove = new Button("Remove");
+        remove.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
+        remove.setOnAction(e -> workspace.remove(table.getSelectionModel().getSelectedItem().path));
+
+        Label note = new Label("Roots are rescanned in the background every " + Workspace.REFRESH_INTERVAL_MS / 60_000
+                + " minutes, more slowly while you are working.");
+        note.setWrapText(true);
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox actions = new HBox(8, add, spacer, refreshNow, remove);
+        actions.setAlignment(Pos.CENTER_LEFT);
+        VBox layout = new VBox(8, table, note, actions);
+        VBox.setVgrow(table, Priority.ALWAYS);
+        layout.setPadding(new Insets(12));
+        stage.setScene(new Scene(layout, 760, 360));
+        stage.show();
+    }
+
+    private static TableColumn<Workspace.Root, String> column(String title, Function<Workspace.Root, String> value) {
+        TableColumn<Workspace.Root, String> c = new TableColumn<>(title);
+        c.setCellValueFactory(cd -> new ReadOnlyStringWrapper(value.apply(cd.getValue())));
+        c.setSortable(false);
+        return c;
+    }
+}
@@ -0,0 +1,125 @@
+package manager;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GistClientTest {
+    private GistStub github;
+    private GistClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        github = new GistStub();
+        client = new GistClient(github.url());
+    }
+
+    @AfterEach
+    void tearDown() {
+        github.close();
+    }
+
+    @Test
+    void createGistPostsFilesWithToken() {
+        github.handle(r -> new GistStub.Reply(201, "{\"id\":\"abc\",\"html_url\":\"https://gist.example/abc\"}"));
+
+        JSONObject gist = client.createGist("desc", false, Map.of("a.java", "class A {}"), "secret").join();
+
+        assertEquals("abc", gist.getString("id"));
+        GistStub.Request post = github.requests.get(0);
+        assertEquals("POST", post.method);
+        assertEquals("/gists", post.uri);
+        assertEquals("token secret", post.header("Authorization"));
+        JSONObject sent = new JSONObject(post.body);
+        assertFalse(sent.getBoolean("public"));
+        assertEquals("class A {}", sent.getJSONObject("files").getJSONObject("a.java").getString("content"));
+    }
+
+    @Test
+    void rateLimitAnswerFailsWithStatusAndHeaders() {
+        github.handle(r -> new GistStub.Reply(403, "{\"message\":\"API rate limit exceeded\"}")
+                .header("x-ratelimit-remaining", "0")
+                .header("x-ratelimit-reset", "1700000000"));
+
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> client.createGist("desc", true, Map.of("a.txt", "x"), "secret").join());
+
+        GistException cause = assertInstanceOf(GistException.class, ex.getCause());
+        assertEquals(403, cause.status);
+        assertEquals("0", cause.headers.firstValue("x-ratelimit-remaining").orElse(null));
+        assertTrue(cause.body.contains("rate limit"));
+    }
+
+    @Test
+    void emptyGistIsRejectedWithoutARequest() {
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> client.createGist("desc", true, Map.of(), "secret").join());
+
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+        assertTrue(github.requests.isEmpty());
+    }
+
+    @Test
+    void conditionalGetSendsEtagAndAccepts304() {
+        github.handle(r -> "\"v1\"".equals(r.header("If-None-Match"))
+                ? new GistStub.Reply(304, null)
+                : new GistStub.Reply(200, "[]").header("ETag", "\"v1\""));
+
+        HttpResponse<String> first = client.get("/gists", null, "secret").join();
+        HttpResponse<String> second = client.get("/gists", "\"v1\"", "secret").join();
+
+        assertEquals(200, first.statusCode());
+        assertEquals("\"v1\"", first.headers().firstValue("ETag").orElse(null));
+        assertEquals(304, second.statusCode());
+        assertNull(github.requests.get(0).header("If-None-Match"));
+    }
+
+    @Test
+    void nextLinkFollowsRelNextOnly() {
+        String next = github.url() + "/gists?per_page=100&page=2";
+        github.handle(r -> r.uri.contains("page=2")
+                ? new GistStub.Reply(200, "[]").header("Link", "<" + github.url() + "/gists?per_page=100&page=1>; rel=\"prev\"")
+                : new GistStub.Reply(200, "[]").header("Link", "<" + next + ">; rel=\"next\", <" + next + ">; rel=\"last\""));
+
+        HttpResponse<String> first = client.get("/gists?per_page=100", null, null).join();
+        assertEquals(next, GistClient.nextLink(first));
+
+        // an absolute Link target is requested as is
+        HttpResponse<String> last = client.get(GistClient.nextLink(first), null, null).join();
+        assertNull(GistClient.nextLink(last));
+        assertEquals("/gists?per_page=100&page=2", github.requests.get(1).uri);
+        assertNull(github.requests.get(1).header("Authorization"));
+    }
+
+    @Test
+    void updateFilesPatchesOnlyTheGivenFiles() {
+        github.handle(r -> new GistStub.Reply(200, "{\"id\":\"abc\"}").header("ETag", "\"v2\""));
+
+        HttpResponse<String> r = client.updateFiles("abc", Map.of("a.java", "class B {}"), "secret").join();
+
+        assertEquals("\"v2\"", r.headers().firstValue("ETag").orElse(null));
+        GistStub.Request patch = github.requests.get(0);
+        assertEquals("PATCH", patch.method);
+        assertEquals("/gists/abc", patch.uri);
+        JSONObject files = new JSONObject(patch.body).getJSONObject("files");
+        assertEquals(1, files.length());
+        assertEquals("class B {}", files.getJSONObject("a.java").getString("content"));
+    }
+
+    @Test
+    void patchConflictFailsWithStatus() {
+        github.handle(r -> new GistStub.Reply(409, "{\"message\":\"Conflict\"}"));
+
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> client.updateFiles("abc", Map.of("a.java", "x"), "secret").join());
+
+        assertEquals(409, assertInstanceOf(GistException.class, ex.getCause()).status);
+    }
+}
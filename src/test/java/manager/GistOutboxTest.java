@@ -0,0 +1,190 @@
+package manager;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.http.HttpHeaders;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GistOutboxTest {
+    @TempDir
+    Path dir;
+    private GistStub github;
+    private GistOutbox outbox;
+    private final Events events = new Events();
+
+    // What the listener heard, in order
+    static final class Events implements GistOutbox.Listener {
+        final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        volatile long lastDelay;
+
+        @Override
+        public void published(GistOutbox.Entry entry, JSONObject gist) {
+            queue.add("published " + entry.description + " " + gist.getString("id"));
+        }
+
+        @Override
+        public void retrying(GistOutbox.Entry entry, long delayMillis, Throwable cause) {
+            lastDelay = delayMillis;
+            queue.add("retrying " + entry.description);
+        }
+
+        @Override
+        public void failed(GistOutbox.Entry entry, Throwable cause) {
+            queue.add("failed " + entry.description);
+        }
+
+        String next() throws InterruptedException {
+            String e = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull(e, "no outbox event within 10 s");
+            return e;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        github = new GistStub();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (outbox != null) outbox.shutdown();
+        github.close();
+    }
+
+    private GistOutbox start() {
+        outbox = new GistOutbox(dir, new GistClient(github.url()), () -> "secret", events);
+        outbox.start();
+        return outbox;
+    }
+
+    private static Map<String, String> files() {
+        return Map.of("a.java", "class A {}");
+    }
+
+    @Test
+    void retryAfterIsHonouredBeforeTheNextAttempt() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        github.handle(r -> calls.getAndIncrement() == 0
+                ? new GistStub.Reply(429, "{}").header("Retry-After", "1")
+                : new GistStub.Reply(201, "{\"id\":\"g1\"}"));
+        start().enqueue("first", true, files());
+
+        assertEquals("retrying first", events.next());
+        assertEquals(1000, events.lastDelay);
+        assertEquals("published first g1", events.next());
+        assertEquals(2, github.requests.size());
+        long waited = requestGapMillis(0, 1);
+        assertTrue(waited >= 900, "retried after " + waited + " ms");
+        try (Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.filter(p -> p.toString().endsWith(".json")).count());
+        }
+    }
+
+    @Test
+    void exhaustedRateLimitPausesTheWholeQueue() throws Exception {
+        long reset = Instant.now().getEpochSecond() + 1;
+        AtomicInteger calls = new AtomicInteger();
+        github.handle(r -> calls.getAndIncrement() == 0
+                ? new GistStub.Reply(403, "{\"message\":\"API rate limit exceeded\"}")
+                        .header("x-ratelimit-remaining", "0")
+                        .header("x-ratelimit-reset", Long.toString(reset))
+                : new GistStub.Reply(201, "{\"id\":\"g" + calls.get() + "\"}"));
+        start();
+        outbox.enqueue("first", true, files());
+        outbox.enqueue("second", true, files());
+
+        assertEquals("retrying first", events.next());
+        assertTrue(events.lastDelay >= 1000, "paused for " + events.lastDelay + " ms");
+        // the second entry waits out the same limit instead of spending a request on it
+        assertEquals("published first g2", events.next());
+        assertEquals("published second g3", events.next());
+        assertTrue(requestGapMillis(0, 1) >= 900);
+    }
+
+    @Test
+    void clientErrorIsNotRetried() throws Exception {
+        github.handle(r -> new GistStub.Reply(422, "{\"message\":\"Validation Failed\"}"));
+        start().enqueue("bad", true, files());
+
+        assertEquals("failed bad", events.next());
+        assertNull(events.queue.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(1, github.requests.size());
+        try (Stream<Path> failed = Files.list(dir.resolve("failed"))) {
+            assertEquals(1, failed.count());
+        }
+    }
+
+    @Test
+    void pendingEntriesAreReplayedAfterRestart() throws Exception {
+        github.handle(r -> new GistStub.Reply(503, "{}"));
+        start().enqueue("survivor", false, files());
+        assertEquals("retrying survivor", events.next());
+        outbox.shutdown();
+
+        List<Path> saved;
+        try (Stream<Path> s = Files.list(dir)) {
+            saved = s.filter(p -> p.toString().endsWith(".json")).toList();
+        }
+        assertEquals(1, saved.size());
+        assertEquals(1, new JSONObject(Files.readString(saved.get(0))).getInt("attempts"));
+
+        github.handle(r -> new GistStub.Reply(201, "{\"id\":\"g9\"}"));
+        start();
+
+        assertEquals("published survivor g9", events.next());
+        GistStub.Request replayed = github.requests.get(github.requests.size() - 1);
+        assertFalse(new JSONObject(replayed.body).getBoolean("public"));
+        assertFalse(Files.exists(saved.get(0)));
+    }
+
+    @Test
+    void rateLimitDelayReadsRetryAfterAndResetHeaders() {
+        long now = 1_700_000_000_000L;
+        assertEquals(30_000, GistOutbox.rateLimitDelay(headers("Retry-After", "30"), now));
+
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(now + 120_000).atOffset(ZoneOffset.UTC));
+        assertEquals(120_000, GistOutbox.rateLimitDelay(headers("Retry-After", date), now));
+
+        HttpHeaders exhausted = HttpHeaders.of(Map.of(
+                "x-ratelimit-remaining", List.of("0"),
+                "x-ratelimit-reset", List.of(Long.toString(now / 1000 + 60))), (k, v) -> true);
+        assertEquals(61_000, GistOutbox.rateLimitDelay(exhausted, now));
+
+        assertEquals(-1, GistOutbox.rateLimitDelay(headers("x-ratelimit-remaining", "12"), now));
+        assertEquals(-1, GistOutbox.rateLimitDelay(headers("Retry-After", "soon"), now));
+    }
+
+    @Test
+    void backoffGrowsWithinItsWindow() {
+        for (int attempts = 0; attempts < 25; attempts++) {
+            long window = Math.min(15 * 60_000L, 2_000L << Math.min(attempts, 20));
+            long delay = GistOutbox.backoff(attempts);
+            assertTrue(delay >= window / 2 && delay <= window, attempts + " attempts: " + delay);
+        }
+    }
+
+    private long requestGapMillis(int first, int second) {
+        return (github.requests.get(second).receivedNanos - github.requests.get(first).receivedNanos) / 1_000_000;
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        return HttpHeaders.of(Map.of(name, List.of(value)), (k, v) -> true);
+    }
+}
@@ -0,0 +1,116 @@
+package manager;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A local stand-in for the GitHub API. Tests script the answers with {@link #handle}; every
+ * request that reaches the server is recorded in {@link #requests}.
+ */
+final class GistStub implements AutoCloseable {
+
+    static final class Request {
+        final String method;
+        // path and query, as sent
+        final String uri;
+        final Map<String, List<String>> headers;
+        final String body;
+        final long receivedNanos = System.nanoTime();
+
+        Request(String method, String uri, Map<String, List<String>> headers, String body) {
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        String header(String name) {
+            for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+                if (e.getKey().equalsIgnoreCase(name) && !e.getValue().isEmpty()) return e.getValue().get(0);
+            }
+            return null;
+        }
+    }
+
+    static final class Reply {
+        final int status;
+        final String body;
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        Reply header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    interface Handler {
+        Reply handle(Request request);
+    }
+
+    final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final HttpServer server;
+    private volatile Handler handler = r -> new Reply(404, "{\"message\":\"Not Found\"}");
+
+    GistStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+    }
+
+    String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    void handle(Handler handler) {
+        this.handler = handler;
+    }
+
+    List<Request> requests(String method) {
+        List<Request> matching = new ArrayList<>();
+        for (Request r : requests) {
+            if (r.method.equals(method)) matching.add(r);
+        }
+        return matching;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().toString(),
+                    new LinkedHashMap<>(exchange.getRequestHeaders()), body);
+            requests.add(request);
+            Reply reply;
+            try {
+                reply = handler.handle(request);
+            } catch (RuntimeException ex) {
+                reply = new Reply(500, String.valueOf(ex));
+            }
+            reply.headers.forEach((k, v) -> exchange.getResponseHeaders().add(k, v));
+            byte[] bytes = reply.body == null ? new byte[0] : reply.body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(reply.status, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
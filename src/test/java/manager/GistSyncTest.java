@@ -0,0 +1,265 @@
+package manager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GistSyncTest {
+    @TempDir
+    Path dir;
+    private GistStub github;
+    private FakeGists gists;
+    private GistSync sync;
+    private List<Snippet> library;
+
+    /**
+     * Two gists of the signed-in user, one per listing page, with ETags that change whenever a
+     * page or gist does.
+     */
+    final class FakeGists implements GistStub.Handler {
+        final Map<String, Map<String, String>> files = new TreeMap<>();
+        final Map<String, Integer> versions = new HashMap<>();
+        volatile int patchStatus = 200;
+
+        void put(String id, String file, String content) {
+            files.computeIfAbsent(id, k -> new TreeMap<>()).put(file, content);
+            versions.merge(id, 1, Integer::sum);
+        }
+
+        @Override
+        public synchronized GistStub.Reply handle(GistStub.Request r) {
+            if (r.uri.equals("/gists?per_page=100")) {
+                return page("a", r).header("Link", "<" + github.url() + "/gists?per_page=100&page=2>; rel=\"next\"");
+            }
+            if (r.uri.equals("/gists?per_page=100&page=2")) return page("b", r);
+            String id = r.uri.substring("/gists/".length());
+            if (!files.containsKey(id)) return new GistStub.Reply(404, "{}");
+            if (r.method.equals("PATCH")) {
+                if (patchStatus != 200) return new GistStub.Reply(patchStatus, "{\"message\":\"rejected\"}");
+                JSONObject sent = new JSONObject(r.body).getJSONObject("files");
+                for (String name : sent.keySet()) put(id, name, sent.getJSONObject(name).getString("content"));
+            } else if (etag(id).equals(r.header("If-None-Match"))) {
+                return new GistStub.Reply(304, null);
+            }
+            return new GistStub.Reply(200, gist(id).toString()).header("ETag", etag(id));
+        }
+
+        private GistStub.Reply page(String id, GistStub.Request r) {
+            String body = new JSONArray().put(new JSONObject().put("id", id).put("updated_at", updatedAt(id))).toString();
+            String etag = "\"page-" + id + "-" + versions.get(id) + "\"";
+            return etag.equals(r.header("If-None-Match")) ? new GistStub.Reply(304, null) : new GistStub.Reply(200, body).header("ETag", etag);
+        }
+
+        private JSONObject gist(String id) {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, String> f : files.get(id).entrySet()) {
+                json.put(f.getKey(), new JSONObject().put("content", f.getValue()).put("language", "Java"));
+            }
+            return new JSONObject().put("id", id).put("description", "gist " + id)
+                    .put("updated_at", updatedAt(id)).put("files", json);
+        }
+
+        private String etag(String id) {
+            return "\"" + id + "-" + versions.get(id) + "\"";
+        }
+
+        private String updatedAt(String id) {
+            return "2024-01-01T00:00:" + String.format("%02d", versions.get(id)) + "Z";
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        github = new GistStub();
+        gists = new FakeGists();
+        gists.put("a", "A.java", "class A {}");
+        gists.put("b", "B.java", "class B {}");
+        github.handle(gists);
+        sync = new GistSync(new GistClient(github.url()), dir);
+        library = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        github.close();
+    }
+
+    // Apply and commit a result the way the window does
+    private GistSync.Result sync() {
+        GistSync.Result result = sync.sync(List.copyOf(library), "secret").join();
+        library.replaceAll(s -> result.updated.getOrDefault(s, s));
+        library.addAll(result.added);
+        try {
+            sync.commit(result);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return result;
+    }
+
+    private Snippet find(String file) {
+        for (Snippet s : library) {
+            if (file.equals(s.gistFile)) return s;
+        }
+        throw new AssertionError("no snippet for " + file);
+    }
+
+    private void editLocally(String file, String code) {
+        Snippet old = find(file);
+        Snippet edited = old.withCode(code);
+        edited.gistId = old.gistId;
+        edited.gistFile = old.gistFile;
+        library.set(library.indexOf(old), edited);
+    }
+
+    @Test
+    void firstSyncFollowsLinkPagingAndAddsEveryFile() {
+        GistSync.Result result = sync();
+
+        assertEquals(2, result.added.size());
+        assertEquals("class A {}", find("A.java").code);
+        assertEquals("b", find("B.java").gistId);
+        assertEquals(List.of("/gists?per_page=100", "/gists/a", "/gists?per_page=100&page=2", "/gists/b"), uris());
+    }
+
+    @Test
+    void unchangedGistsCostOnlyConditionalListingRequests() {
+        sync();
+        github.requests.clear();
+
+        GistSync.Result result = sync();
+
+        assertEquals(2, result.notModified);
+        assertTrue(result.added.isEmpty() && result.updated.isEmpty());
+        assertEquals(0, result.pushed);
+        assertEquals(List.of("/gists?per_page=100", "/gists?per_page=100&page=2"), uris());
+        for (GistStub.Request r : github.requests) assertNotNull(r.header("If-None-Match"), r.uri);
+    }
+
+    @Test
+    void stateSurvivesARestart() {
+        sync();
+        github.requests.clear();
+        sync = new GistSync(new GistClient(github.url()), dir);
+
+        assertEquals(2, sync().notModified);
+        assertEquals(2, github.requests.size());
+    }
+
+    @Test
+    void remoteEditUpdatesTheLocalSnippetInPlace() {
+        sync();
+        Snippet before = find("A.java");
+        before.sourceFile = new File("a.properties");
+        gists.put("a", "A.java", "class A { int x; }");
+        github.requests.clear();
+
+        GistSync.Result result = sync();
+
+        assertEquals(1, result.updated.size());
+        Snippet after = result.updated.get(before);
+        assertEquals("class A { int x; }", after.code);
+        assertEquals(before.sourceFile, after.sourceFile);
+        assertEquals(0, result.pushed);
+        // page 2 and gist b did not change
+        assertEquals(List.of("/gists?per_page=100", "/gists/a", "/gists?per_page=100&page=2"), uris());
+    }
+
+    @Test
+    void localEditIsPushedAsOnePatchOfChangedFiles() {
+        gists.put("a", "A2.java", "class A2 {}");
+        sync();
+        editLocally("A.java", "class A { void edited() {} }");
+        github.requests.clear();
+
+        GistSync.Result result = sync();
+
+        assertEquals(1, result.pushed);
+        List<GistStub.Request> patches = github.requests("PATCH");
+        assertEquals(1, patches.size());
+        assertEquals("/gists/a", patches.get(0).uri);
+        assertEquals(Set.of("A.java"), new JSONObject(patches.get(0).body).getJSONObject("files").keySet());
+        assertEquals("class A { void edited() {} }", gists.files.get("a").get("A.java"));
+
+        // the pushed version is now the synced one; nothing comes back or goes out again
+        github.requests.clear();
+        GistSync.Result again = sync();
+        assertEquals(0, again.pushed);
+        assertTrue(again.updated.isEmpty());
+        assertTrue(github.requests("PATCH").isEmpty());
+    }
+
+    @Test
+    void editOnBothSidesKeepsTheLocalVersion() {
+        sync();
+        gists.put("a", "A.java", "class A { remote }");
+        editLocally("A.java", "class A { local }");
+
+        GistSync.Result result = sync();
+
+        assertEquals(1, result.conflicts);
+        assertTrue(result.updated.isEmpty());
+        assertEquals(1, result.pushed);
+        assertEquals("class A { local }", gists.files.get("a").get("A.java"));
+    }
+
+    @Test
+    void rejectedPatchIsRetriedOnTheNextSync() {
+        sync();
+        editLocally("B.java", "class B { edited }");
+        gists.patchStatus = 409;
+
+        CompletionException ex = assertThrows(CompletionException.class, this::sync);
+        assertEquals(409, assertInstanceOf(GistException.class, ex.getCause()).status);
+        assertEquals("class B {}", gists.files.get("b").get("B.java"));
+
+        gists.patchStatus = 200;
+        GistSync.Result result = sync();
+        assertEquals(1, result.pushed);
+        assertEquals("class B { edited }", gists.files.get("b").get("B.java"));
+    }
+
+    @Test
+    void filesPulledBeforeAFailedPushArePulledAgain() {
+        sync();
+        gists.put("a", "A2.java", "class A2 {}");
+        editLocally("B.java", "class B { edited }");
+        gists.patchStatus = 409;
+
+        assertThrows(CompletionException.class, this::sync);
+        assertTrue(library.stream().noneMatch(s -> "A2.java".equals(s.gistFile)));
+
+        gists.patchStatus = 200;
+        GistSync.Result result = sync();
+        assertEquals(1, result.added.size());
+        assertEquals("class A2 {}", find("A2.java").code);
+        assertEquals(1, result.pushed);
+    }
+
+    @Test
+    void uncommittedResultIsPulledAgain() {
+        GistSync.Result dropped = sync.sync(List.of(), "secret").join();
+        assertEquals(2, dropped.added.size());
+
+        // as if saving the added snippets had failed
+        assertEquals(2, sync().added.size());
+    }
+
+    private List<String> uris() {
+        List<String> uris = new ArrayList<>();
+        for (GistStub.Request r : github.requests) uris.add(r.uri);
+        return uris;
+    }
+}
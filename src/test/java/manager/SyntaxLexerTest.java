@@ -0,0 +1,90 @@
+package manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The hand-written lexers must color code exactly as the LANGUAGE_SYNTAX regexes do. The one
+ * intended difference: an unterminated string or block comment runs to the end of the text in
+ * the lexer, so a range lexed on its own ends in the state the next range continues from. The
+ * regex never matches an opener without its closer and colors what follows as code.
+ */
+class SyntaxLexerTest {
+
+    private static String corpus(String language) {
+        switch (language) {
+            case "java": return SyntheticCode.javaClass(40, 1);
+            case "python": return SyntheticCode.pythonModule(40, 2);
+            case "javascript": return SyntheticCode.javascriptModule(40, 3);
+            case "cpp": return SyntheticCode.cppFile(40, 4);
+            case "sql": return SyntheticCode.sqlScript(40, 5);
+            default: throw new IllegalArgumentException(language);
+        }
+    }
+
+    // "start-end type" per token, in order
+    private static List<String> lexerTokens(LanguageSyntax syntax, String code) {
+        List<String> tokens = new ArrayList<>();
+        syntax.tokens(code, (start, end, type) -> tokens.add(start + "-" + end + " " + SyntaxLexer.STYLE_CLASSES[type]));
+        return tokens;
+    }
+
+    private static List<String> regexTokens(LanguageSyntax syntax, String code) {
+        return lexerTokens(new LanguageSyntax(syntax.pattern, syntax.styleMap), code);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"java", "python", "javascript", "cpp", "sql"})
+    void lexerMatchesTheRegexOnTheCorpus(String language) {
+        LanguageSyntax syntax = SyntaxRegistry.forLanguage(language);
+        assertNotNull(syntax.lexer);
+        String code = corpus(language);
+
+        List<String> expected = regexTokens(syntax, code);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, lexerTokens(syntax, code));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"java", "python", "javascript", "cpp", "sql"})
+    void rangesLexedOneLineAtATimeMatchTheWholeText(String language) {
+        SyntaxLexer lexer = SyntaxRegistry.forLanguage(language).lexer;
+        String code = corpus(language);
+        int[] whole = new int[code.length()];
+        lexer.lex(code, 0, code.length(), SyntaxLexer.DEFAULT, (start, end, type) -> Arrays.fill(whole, start, end, type));
+
+        // a multi-line token comes back as one piece per line, so compare the type of each char
+        int[] pieces = new int[code.length()];
+        int state = SyntaxLexer.DEFAULT;
+        for (int from = 0; from < code.length(); ) {
+            int to = code.indexOf('\n', from) + 1;
+            if (to == 0) to = code.length();
+            state = lexer.lex(code, from, to, state, (start, end, type) -> Arrays.fill(pieces, start, end, type));
+            from = to;
+        }
+        assertArrayEquals(whole, pieces);
+    }
+
+    @Test
+    void unterminatedStringAndCommentRunToTheEnd() {
+        LanguageSyntax java = SyntaxRegistry.forLanguage("java");
+        String string = "x = \"open;\nint y = 1;\n";
+        String comment = "x = 1; /* open\nint y = 1;\n";
+
+        assertEquals(List.of("2-3 operator", "4-" + string.length() + " string"), lexerTokens(java, string));
+        assertEquals(List.of("2-3 operator", "4-5 number", "7-" + comment.length() + " comment"), lexerTokens(java, comment));
+        assertEquals(SyntaxLexer.DOUBLE_QUOTED, java.lexer.lex(string, 0, string.length(), SyntaxLexer.DEFAULT, (s, e, t) -> { }));
+        assertEquals(SyntaxLexer.BLOCK_COMMENT, java.lexer.lex(comment, 0, comment.length(), SyntaxLexer.DEFAULT, (s, e, t) -> { }));
+
+        // the regex skips the opener and colors the rest as code
+        assertTrue(regexTokens(java, string).contains("11-14 keyword"));
+        assertTrue(regexTokens(java, comment).contains("15-18 keyword"));
+    }
+}
@@ -0,0 +1,127 @@
+package manager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic sources and libraries for the benchmarks, so runs are comparable, and
+ * for the tests that compare the lexers with the regexes.
+ */
+final class SyntheticCode {
+    private static final String[] WORDS = {"parse", "load", "save", "index", "render", "merge", "split", "find", "sort", "hash"};
+
+    private SyntheticCode() {
+    }
+
+    static String javaClass(int methods, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder("package demo;\n\nimport java.util.*;\n\n/** Generated. */\npublic class Demo {\n");
+        for (int m = 0; m < methods; m++) {
+            String name = WORDS[r.nextInt(WORDS.length)] + m;
+            sb.append("    // ").append(name).append(" does things\n");
+            sb.append("    @Override\n    public static List<String> ").append(name).append("(int a, String b) {\n");
+            sb.append("        List<String> out = new ArrayList<>();\n");
+            sb.append("        for (int i = 0; i < a; i++) {\n");
+            sb.append("            if (i % 3 == 0) out.add(b + \"-\" + i + 'x');\n");
+            sb.append("            /* block comment */ out.add(String.valueOf(i * 2.5));\n");
+            sb.append("        }\n        return out;\n    }\n\n");
+        }
+        return sb.append("}\n").toString();
+    }
+
+    static String pythonModule(int functions, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder("import os\n\n");
+        for (int f = 0; f < functions; f++) {
+            String name = WORDS[r.nextInt(WORDS.length)] + f;
+            sb.append("def ").append(name).append("(a, b):\n");
+            sb.append("    \"\"\"Docstring for ").append(name).append(".\"\"\"\n");
+            sb.append("    # comment\n    out = []\n    for i in range(a):\n");
+            sb.append("        if i % 3 == 0:\n            out.append('%s-%d' % (b, i))\n    return out\n\n");
+        }
+        return sb.toString();
+    }
+
+    static String javascriptModule(int functions, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int f = 0; f < functions; f++) {
+            String name = WORDS[r.nextInt(WORDS.length)] + f;
+            sb.append("// ").append(name).append("\nfunction ").append(name).append("(a, b) {\n");
+            sb.append("    const out = [];\n    for (let i = 0; i < a; i++) {\n");
+            sb.append("        if (i % 3 === 0) out.push(`${b}-${i}` + \"x\" + 'y');\n    }\n    return out;\n}\n\n");
+        }
+        return sb.toString();
+    }
+
+    static String htmlPage(int sections, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder("<!DOCTYPE html>\n<html>\n<body>\n");
+        for (int s = 0; s < sections; s++) {
+            sb.append("  <!-- section ").append(s).append(" -->\n");
+            sb.append("  <div class=\"").append(WORDS[r.nextInt(WORDS.length)]).append("\" id=\"s").append(s).append("\">\n");
+            sb.append("    <p>Text ").append(s).append("</p>\n  </div>\n");
+        }
+        return sb.append("</body>\n</html>\n").toString();
+    }
+
+    static String cppFile(int functions, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder("#include <string>\n#include <vector>\n\nnamespace demo {\n\n");
+        for (int f = 0; f < functions; f++) {
+            String name = WORDS[r.nextInt(WORDS.length)] + f;
+            sb.append("// ").append(name).append(" does things\n");
+            sb.append("static std::vector<std::string> ").append(name).append("(int a, const std::string& b) {\n");
+            sb.append("    std::vector<std::string> out;\n    for (int i = 0; i < a; ++i) {\n");
+            sb.append("        if (i % 3 == 0) out.push_back(b + \"-\" + std::to_string(i) + 'x');\n");
+            sb.append("        /* block comment */ out.push_back(std::to_string(i * 2.5));\n    }\n    return out;\n}\n\n");
+        }
+        return sb.append("}  // namespace demo\n").toString();
+    }
+
+    static String sqlScript(int statements, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder("-- generated\n");
+        for (int s = 0; s < statements; s++) {
+            String table = WORDS[r.nextInt(WORDS.length)] + s;
+            sb.append("/* ").append(table).append(" */\n");
+            sb.append("CREATE TABLE ").append(table).append(" (id INT PRIMARY KEY, name VARCHAR(40) NOT NULL, score DECIMAL(5, 2));\n");
+            sb.append("INSERT INTO ").append(table).append(" (id, name, score) VALUES (").append(s).append(", 'it''s row ").append(s).append("', 2.5);\n");
+            sb.append("SELECT name, COUNT(*) FROM ").append(table).append(" WHERE score >= 1.5 AND id <> 0 GROUP BY name ORDER BY name;\n\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A project tree with {@code files} Java files spread over a few packages.
+     */
+    static Path projectTree(int files, int methodsPerFile) throws IOException {
+        Path root = Files.createTempDirectory("jmh-project");
+        for (int f = 0; f < files; f++) {
+            Path pkg = Files.createDirectories(root.resolve("src/pkg" + (f % 8)));
+            Files.writeString(pkg.resolve("Demo" + f + ".java"), javaClass(methodsPerFile, f));
+        }
+        return root;
+    }
+
+    static List<Snippet> library(int size, long seed) {
+        Random r = new Random(seed);
+        List<Snippet> library = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String w = WORDS[r.nextInt(WORDS.length)];
+            library.add(new Snippet(w + " helper " + i, javaClass(1, i), i % 2 == 0 ? "Java" : "Python",
+                    w + ", util, t" + (i % 50), "How to " + w + " things #" + i));
+        }
+        return library;
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        try (var paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(p -> p.toFile().delete());
+        }
+    }
+}